@@ -0,0 +1,51 @@
+package benchmark;
+
+import ascii_art.img_to_char.CharRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering glyphs: the first render of every char in a font, which rasterizes it, and a lookup
+ * of an already rendered char. Rendered chars stay cached for the life of the JVM, so every fork renders
+ * the chars for the first time exactly once.
+ */
+@State(Scope.Thread)
+public class GlyphBenchmark {
+    private static final int GLYPH_PIXELS = 16;
+    private static final Character[] CHARS = SyntheticImages.chars("all");
+    private int next = 0;
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public boolean[][][] firstRender() {
+        boolean[][][] glyphs = new boolean[CHARS.length][][];
+        for (int i = 0; i < CHARS.length; i++) {
+            glyphs[i] = CharRenderer.getImg(CHARS[i], GLYPH_PIXELS, SyntheticImages.FONT);
+        }
+        return glyphs;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(2)
+    public boolean[][] cached() {
+        next = (next + 1) % CHARS.length;
+        return CharRenderer.getImg(CHARS[next], GLYPH_PIXELS, SyntheticImages.FONT);
+    }
+}
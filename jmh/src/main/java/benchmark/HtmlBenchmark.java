@@ -0,0 +1,61 @@
+package benchmark;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_output.HtmlAsciiOutput;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing the chars of an image to an HTML file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HtmlBenchmark {
+    private static final String SIZE = "2048x1536";
+
+    @Param({"16", "64", "256", "1024"})
+    public int charsInRow;
+
+    private char[][] chars;
+    private File html;
+
+    @Setup(Level.Trial)
+    public void matchImage() throws IOException {
+        File file = SyntheticImages.write(SIZE);
+        Image image = Image.fromFile(file.getPath());
+        file.delete();
+        chars = new BrightnessImgCharMatcher(image, SyntheticImages.FONT).chooseChars(charsInRow,
+                SyntheticImages.chars("all"));
+        html = File.createTempFile("benchmark", ".html");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteHtml() {
+        html.delete();
+    }
+
+    @Benchmark
+    public void html() {
+        new HtmlAsciiOutput(html.getPath(), SyntheticImages.FONT).output(chars);
+    }
+}
@@ -0,0 +1,51 @@
+package benchmark;
+
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading an image file: decoding it into the pixels of an Image
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LoadBenchmark {
+    @Param({"203x157", "256x256", "1000x750", "1024x1024", "4096x4096"})
+    public String size;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void writeImage() throws IOException {
+        file = SyntheticImages.write(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteImage() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Image load() {
+        return Image.fromFile(file.getPath());
+    }
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching the sub-images of an image to chars. Every operation starts from a fresh matcher, so
+ * no operation reuses the sub-images an earlier one computed.
+ * Sub-images that are aligned squares of a power of two pixels (such as 16 chars in a row of 256x256) are
+ * summed by the luminance pyramid, and any other sub-images by the summed-area table, so the sizes include
+ * both. match runs on an image whose luminance tables were built by earlier operations, and
+ * matchNewImage on a newly decoded image, so it builds the tables as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MatchBenchmark {
+    @Param({"203x157", "256x256", "1000x750", "1024x1024", "4096x4096"})
+    public String size;
+
+    @Param({"16", "64", "101"})
+    public int charsInRow;
+
+    @Param({"digits", "all"})
+    public String chars;
+
+    private File file;
+    private Image image;
+    private Character[] charSet;
+
+    /**
+     * An image decoded again before every operation, outside of the measured time
+     */
+    @State(Scope.Thread)
+    public static class NewImage {
+        private Image image;
+
+        @Setup(Level.Invocation)
+        public void decode(MatchBenchmark benchmark) {
+            image = Image.fromFile(benchmark.file.getPath());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void writeImage() throws IOException {
+        file = SyntheticImages.write(size);
+        image = Image.fromFile(file.getPath());
+        charSet = SyntheticImages.chars(chars);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteImage() {
+        file.delete();
+    }
+
+    @Benchmark
+    public char[][] match() {
+        return new BrightnessImgCharMatcher(image, SyntheticImages.FONT).chooseChars(charsInRow, charSet);
+    }
+
+    @Benchmark
+    public char[][] matchNewImage(NewImage newImage) {
+        return new BrightnessImgCharMatcher(newImage.image, SyntheticImages.FONT).chooseChars(charsInRow,
+                charSet);
+    }
+}
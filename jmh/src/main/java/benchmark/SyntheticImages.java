@@ -0,0 +1,60 @@
+package benchmark;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * A package-private class of the package benchmark.
+ * The inputs of the benchmarks: generated images, so the benchmarks run offline, and the char sets.
+ */
+final class SyntheticImages {
+    static final String FONT = "Courier New";
+    private static final String SIZE_SEPARATOR = "x";
+    private static final int MIN_ASCII_VAL = 32;
+    private static final int MAX_ASCII_VAL = 126;
+    private static final long SEED = 42;
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * Writes a PNG of a diagonal gradient with random noise, the same for every run, to a temporary file
+     * @param size the width and height of the image, such as 203x157
+     * @return the written file, which the caller deletes
+     * @throws IOException in case the file can't be written
+     */
+    static File write(String size) throws IOException {
+        String[] dimensions = size.split(SIZE_SEPARATOR);
+        int width = Integer.parseInt(dimensions[0]), height = Integer.parseInt(dimensions[1]);
+        BufferedImage im = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(SEED);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int grey = Math.min(255, (x + y) * 255 / (width + height) + random.nextInt(32));
+                row[x] = (grey << 16) | (grey << 8) | grey;
+            }
+            im.setRGB(0, y, width, 1, row, 0, width);
+        }
+        File file = File.createTempFile("synthetic_" + size, ".png");
+        ImageIO.write(im, "png", file);
+        return file;
+    }
+
+    /**
+     * @param name "digits" for 0-9, or "all" for every printable ascii char
+     * @return the chars
+     */
+    static Character[] chars(String name) {
+        return name.equals("digits") ? charRange('0', '9') : charRange(MIN_ASCII_VAL, MAX_ASCII_VAL);
+    }
+
+    private static Character[] charRange(int min, int max) {
+        Character[] chars = new Character[max - min + 1];
+        for (int i = min; i <= max; i++) chars[i - min] = (char) i;
+        return chars;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * JMH benchmarks of every stage of the application - loading, matching, glyph rendering and HTML output -
+ * on generated images. Run them with: java -jar jmh/target/benchmarks.jar -prof gc
+ */
+package benchmark;
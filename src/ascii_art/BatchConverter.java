@@ -0,0 +1,254 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import image.Image;
+import image.ImageCache;
+import metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Converts many image files without user interaction, each to one or more resolutions and formats.
+ * The conversion runs as a pipeline of three stages - decode, match and write - each on its own pool of
+ * workers. The stages are connected by bounded queues, so a fast stage waits for a slow one instead of
+ * piling decoded images up in memory. All the variants of an image are one RenderPlan, so the image is
+ * decoded once and every resolution is matched once, however many formats it is written in.
+ */
+public class BatchConverter {
+    private static final int MIN_PIXELS_PER_CHAR = 2;
+    private static final int QUEUE_CAPACITY_PER_WORKER = 2;
+    private static final String FONT = "Courier New";
+    private static final String FAILED_DECODE_ERR = "Failed to open image file ";
+    private static final String FAILED_JOB_ERR = "Failed to convert image file ";
+    private static final String VARIANT_NAME = "%s_%d"; //image name, chars in row
+    private static final String SUMMARY_MSG = "Converted %d of %d images in %d ms%n";
+    private static final Job END_OF_JOBS = new Job(null); //passed down the pipeline after the last job
+
+    private final List<File> inputs;
+    private final File outputDir;
+    private final int[] resolutions;
+    private final Character[] charSet;
+    private final List<String> formats;
+    private final int workers;
+    private final ImageCache imageCache;
+    private final AtomicInteger converted = new AtomicInteger();
+
+    /**
+     * A single image on its way through the pipeline
+     */
+    private static class Job {
+        private final File input;
+        private Image image;
+        private RenderPlan plan;
+
+        private Job(File input) {
+            this.input = input;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param inputs the image files to convert
+     * @param outputDir the directory to write the converted images to
+     * @param charsInRow number of ascii chars in a row. clamped to what each image allows
+     * @param charSet all the characters available to transform into
+     * @param format the format of the output files, one of AsciiOutput.FILE_FORMATS
+     * @param workers the number of workers of each stage
+     * @param cacheDir a directory to cache decoded images in, so later runs don't decode them again. null
+     *                 to always decode
+     */
+    public BatchConverter(List<File> inputs, File outputDir, int charsInRow, Character[] charSet,
+                          String format, int workers, File cacheDir) {
+        this(inputs, outputDir, new int[]{charsInRow}, charSet, List.of(format), workers, cacheDir);
+    }
+
+    /**
+     * Constructor of a conversion of every image to several variants. Each image is written once per
+     * resolution and format. With a single resolution the output file is named after the image, as
+     * image.format, and with several resolutions it is image_resolution.format
+     * @param inputs the image files to convert
+     * @param outputDir the directory to write the converted images to
+     * @param resolutions numbers of ascii chars in a row. clamped to what each image allows
+     * @param charSet all the characters available to transform into
+     * @param formats the formats of the output files, each one of AsciiOutput.FILE_FORMATS
+     * @param workers the number of workers of each stage
+     * @param cacheDir a directory to cache decoded images in, so later runs don't decode them again. null
+     *                 to always decode
+     */
+    public BatchConverter(List<File> inputs, File outputDir, int[] resolutions, Character[] charSet,
+                          List<String> formats, int workers, File cacheDir) {
+        for (String format : formats) {
+            if (!AsciiOutput.FILE_FORMATS.contains(format)) {
+                throw new IllegalArgumentException("Unknown output format " + format);
+            }
+        }
+        this.inputs = inputs;
+        this.outputDir = outputDir;
+        this.resolutions = resolutions;
+        this.charSet = charSet;
+        this.formats = formats;
+        this.workers = workers;
+        this.imageCache = cacheDir == null ? null : new ImageCache(cacheDir);
+    }
+
+    /**
+     * Lists the images to convert
+     * @param source either a directory, whose files are all converted, or a text file listing one image
+     *               path per line
+     * @return the image files
+     * @throws IOException in case the source can't be read
+     */
+    public static List<File> listInputs(File source) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        if (source.isDirectory()) {
+            File[] files = source.listFiles(File::isFile);
+            if (files == null) throw new IOException("Cannot list " + source);
+            for (File file : files) inputs.add(file);
+            inputs.sort(null);
+        }
+        else {
+            for (String line : Files.readAllLines(source.toPath())) {
+                if (!line.isBlank()) inputs.add(new File(line.trim()));
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Converts all images and prints a summary, along with the time and allocations of every stage
+     * @return the number of images that failed to convert
+     * @throws InterruptedException in case the calling thread is interrupted while waiting
+     */
+    public int run() throws InterruptedException {
+        long start = System.nanoTime();
+        int capacity = QUEUE_CAPACITY_PER_WORKER * workers;
+        BlockingQueue<Job> toDecode = new LinkedBlockingQueue<>();
+        BlockingQueue<Job> toMatch = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Job> toWrite = new ArrayBlockingQueue<>(capacity);
+        for (File input : inputs) toDecode.add(new Job(input));
+        toDecode.add(END_OF_JOBS);
+
+        ExecutorService pool = Executors.newFixedThreadPool(3 * workers);
+        startStage(pool, toDecode, toMatch, this::decode);
+        startStage(pool, toMatch, toWrite, this::match);
+        startStage(pool, toWrite, null, this::write);
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        System.out.printf(SUMMARY_MSG, converted.get(), inputs.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.out.print(Metrics.report());
+        return inputs.size() - converted.get();
+    }
+
+    /**
+     * Starts the workers of one stage. Each worker takes jobs from the input queue, processes them and puts
+     * the jobs that succeeded in the output queue, which blocks while the next stage is behind. Once all
+     * workers of the stage stopped, whether they saw the end of the jobs or failed, the end is passed on to
+     * the next stage, so the next stage always stops too.
+     * @param pool the pool to run the workers in
+     * @param in the queue of the stage's jobs
+     * @param out the queue of the next stage, or null for the last stage
+     * @param process processes a job, returns false if it failed. a job that throws failed as well, and
+     *                doesn't stop the worker
+     */
+    private void startStage(ExecutorService pool, BlockingQueue<Job> in, BlockingQueue<Job> out,
+                            Function<Job, Boolean> process) {
+        AtomicInteger runningWorkers = new AtomicInteger(workers);
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> {
+                try {
+                    while (true) {
+                        Job job = in.take();
+                        if (job == END_OF_JOBS) {
+                            in.put(END_OF_JOBS); //for the other workers of the stage
+                            return;
+                        }
+                        boolean succeeded;
+                        try {
+                            succeeded = process.apply(job);
+                        } catch (Throwable e) { //such as running out of memory on one huge image
+                            Logger.getGlobal().log(Level.SEVERE, FAILED_JOB_ERR + job.input, e);
+                            succeeded = false;
+                        }
+                        if (succeeded && out != null) out.put(job);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (runningWorkers.decrementAndGet() == 0 && out != null) {
+                        putUninterruptibly(out, END_OF_JOBS);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Puts a job in a queue, waiting for room even if the calling thread is interrupted meanwhile. The
+     * interrupt is kept for the caller
+     * @param queue the queue
+     * @param job the job
+     */
+    private static void putUninterruptibly(BlockingQueue<Job> queue, Job job) {
+        boolean isInterrupted = Thread.interrupted();
+        while (true) {
+            try {
+                queue.put(job);
+                break;
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) Thread.currentThread().interrupt();
+    }
+
+    private boolean decode(Job job) {
+        job.image = imageCache == null ? Image.fromFile(job.input.getPath()) :
+                imageCache.open(job.input.getPath());
+        if (job.image == null) Logger.getGlobal().severe(FAILED_DECODE_ERR + job.input);
+        return job.image != null;
+    }
+
+    private boolean match(Job job) {
+        Image image = job.image;
+        int minCharsInRow = Math.max(1, image.getWidth() / image.getHeight());
+        int maxCharsInRow = Math.max(1, image.getWidth() / MIN_PIXELS_PER_CHAR);
+        String name = job.input.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension > 0) name = name.substring(0, extension);
+
+        job.plan = new RenderPlan(image, FONT);
+        for (int charsInRow : resolutions) {
+            int imageCharsInRow = Math.max(Math.min(charsInRow, maxCharsInRow), minCharsInRow);
+            String variant = resolutions.length == 1 ? name : String.format(VARIANT_NAME, name, charsInRow);
+            for (String format : formats) {
+                String filename = new File(outputDir, variant + "." + format).getPath();
+                job.plan.add(imageCharsInRow, charSet, AsciiOutput.toFile(format, filename, FONT));
+            }
+        }
+        job.plan.match();
+        job.image = null; //the pixels are no longer needed, let them go before the write
+        return true;
+    }
+
+    private boolean write(Job job) {
+        job.plan.write();
+        converted.incrementAndGet();
+        return true;
+    }
+}
@@ -1,19 +1,287 @@
 package ascii_art;
 
+import ascii_art.img_to_char.AnimationCharMatcher;
+import ascii_art.img_to_char.CharRenderer;
+import ascii_art.img_to_char.StreamingImgCharMatcher;
+import ascii_output.AsciiOutput;
+import image.FrameReader;
 import image.Image;
+import image.ImageBandReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 public class Driver {
+    private static final String GLYPH_CACHE_FLAG = "--glyph-cache";
+    private static final String BATCH_FLAG = "--batch";
+    private static final String ANIMATION_FLAG = "--animation";
+    private static final String SERVE_FLAG = "--serve";
+    private static final String STREAM_FLAG = "--stream";
+    private static final String SERVING_MSG = "Serving on http://localhost:%d/render%n";
+    private static final String FONT = "Courier New";
+    private static final String FRAME_FILE = "frame_%05d.%s";
+    private static final String FRAMES_CONVERTED_MSG = "Converted %d frames%n";
+    private static final int MIN_PIXELS_PER_CHAR = 2;
+    private static final float DEFAULT_FRAME_THRESHOLD = 0.01f;
+    private static final int DEFAULT_BATCH_CHARS_IN_ROW = 64;
+    private static final String DEFAULT_BATCH_CHARS = "0-9";
+    private static final String DEFAULT_BATCH_FORMAT = "html";
+    private static final String LIST_SEPARATOR = ",";
+    private static final int MAX_PORT = 65535;
+    private static final int MIN_ASCII_VAL_ALLOWED = 32;
+    private static final int MAX_ASCII_VAL_ALLOWED = 126;
+    private static final String USAGE =
+            "USAGE: java asciiArt <image file> [--glyph-cache <file>]\n" +
+            "       java asciiArt --batch <image dir | file listing images> <output dir>" +
+            " [--res <chars in row>[,...]] [--chars <chars | a-z | all>] [--format <format>[,...]]" +
+            " [--workers <n>] [--cache <decoded images dir>] [--glyph-cache <file>]\n" +
+            "       java asciiArt --animation <animated image | dir of numbered frames> <output dir>" +
+            " [--res <chars in row>] [--chars <chars | a-z | all>] [--format <format>] [--threshold <0-1>]" +
+            " [--glyph-cache <file>]\n" +
+            "       java asciiArt --stream <image file> <output file> [--res <chars in row>]" +
+            " [--chars <chars | a-z | all>] [--format <format>] [--glyph-cache <file>]\n" +
+            "       java asciiArt --serve <port> [--workers <n>] [--cache <decoded images dir>]" +
+            " [--glyph-cache <file>]\n" +
+            "       formats: " + String.join(", ", AsciiOutput.FILE_FORMATS) + "\n" +
+            "       --glyph-cache keeps the rendered chars in a file between runs";
+
     public static void main(String[] args) throws Exception {
-        if (args.length != 1) {
-            System.err.println("USAGE: java asciiArt ");
+        if (args.length > 0 && args[0].equals(BATCH_FLAG)) {
+            runBatch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals(ANIMATION_FLAG)) {
+            runAnimation(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals(SERVE_FLAG)) {
+            runServer(args);
             return;
         }
-        Image img = Image.fromFile(args[0]);
-        if (img == null) {
-            Logger.getGlobal().severe("Failed to open image file " + args[0]);
+        if (args.length > 0 && args[0].equals(STREAM_FLAG)) {
+            runStream(args);
             return;
         }
+        boolean hasGlyphCache = args.length == 3 && args[1].equals(GLYPH_CACHE_FLAG);
+        if (args.length != 1 && !hasGlyphCache) {
+            System.err.println(USAGE);
+            return;
+        }
+        String glyphCache = hasGlyphCache ? args[2] : null;
+        //the image is decoded in the background, so the prompt is shown right away
+        CompletableFuture<Image> img = CompletableFuture.supplyAsync(() -> Image.fromFile(args[0]));
+        img.thenAccept(decoded -> {
+            if (decoded == null) Logger.getGlobal().severe("Failed to open image file " + args[0]);
+        });
+        loadGlyphCache(glyphCache);
         new Shell(img).run();
+        saveGlyphCache(glyphCache);
+    }
+
+    /**
+     * Options of the non-interactive modes, parsed from the command line
+     */
+    private static class Options {
+        private int[] resolutions = {DEFAULT_BATCH_CHARS_IN_ROW};
+        private String chars = DEFAULT_BATCH_CHARS;
+        private List<String> formats = List.of(DEFAULT_BATCH_FORMAT);
+        private int workers = Runtime.getRuntime().availableProcessors();
+        private float threshold = DEFAULT_FRAME_THRESHOLD;
+        private File cacheDir = null;
+        private String glyphCache = null; //no file, so glyphs are rendered again on every run
+
+        /**
+         * Parses the options that follow the mode flag, its source and its output directory
+         * @param args the command line arguments
+         * @return the options, or null if the arguments are incorrect
+         */
+        private static Options parse(String[] args) {
+            return parse(args, 3);
+        }
+
+        /**
+         * Parses the options that follow the positional arguments of a mode
+         * @param args the command line arguments
+         * @param firstOption the index of the first option, after the mode flag and its positional arguments
+         * @return the options, or null if the arguments are incorrect, including numbers that aren't numbers,
+         * resolutions and workers that aren't positive and thresholds outside 0-1
+         */
+        private static Options parse(String[] args, int firstOption) {
+            if (args.length < firstOption || (args.length - firstOption) % 2 != 0) return null;
+            Options options = new Options();
+            try {
+                for (int i = firstOption; i < args.length; i += 2) {
+                    switch (args[i]) {
+                        case "--res": options.resolutions = Arrays.stream(args[i + 1].split(LIST_SEPARATOR))
+                                .mapToInt(Integer::parseInt).toArray(); break;
+                        case "--chars": options.chars = args[i + 1]; break;
+                        case "--format": options.formats = List.of(args[i + 1].split(LIST_SEPARATOR)); break;
+                        case "--workers": options.workers = Integer.parseInt(args[i + 1]); break;
+                        case "--threshold": options.threshold = Float.parseFloat(args[i + 1]); break;
+                        case "--cache": options.cacheDir = new File(args[i + 1]); break;
+                        case GLYPH_CACHE_FLAG: options.glyphCache = args[i + 1]; break;
+                        default: return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            boolean isValid = options.resolutions.length > 0 &&
+                    Arrays.stream(options.resolutions).allMatch(charsInRow -> charsInRow > 0) &&
+                    options.workers > 0 && options.threshold >= 0 && options.threshold <= 1;
+            return isValid ? options : null;
+        }
+    }
+
+    /**
+     * Converts all images given in the arguments, without the interactive shell
+     * @param args the command line arguments, starting with the batch flag
+     */
+    private static void runBatch(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        if (options == null || !AsciiOutput.FILE_FORMATS.containsAll(options.formats)) {
+            System.err.println(USAGE);
+            return;
+        }
+        File outputDir = new File(args[2]);
+        if (!createOutputDir(outputDir)) return;
+        loadGlyphCache(options.glyphCache);
+        new BatchConverter(BatchConverter.listInputs(new File(args[1])), outputDir, options.resolutions,
+                parseChars(options.chars), options.formats, options.workers, options.cacheDir).run();
+        saveGlyphCache(options.glyphCache);
+    }
+
+    /**
+     * Converts every frame of an animation given in the arguments to its own output file
+     * @param args the command line arguments, starting with the animation flag
+     */
+    private static void runAnimation(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        //an animation is converted to a single resolution and format
+        if (options == null || options.resolutions.length != 1 || options.formats.size() != 1 ||
+                !AsciiOutput.FILE_FORMATS.contains(options.formats.get(0))) {
+            System.err.println(USAGE);
+            return;
+        }
+        File outputDir = new File(args[2]);
+        if (!createOutputDir(outputDir)) return;
+
+        loadGlyphCache(options.glyphCache);
+        try (FrameReader reader = new FrameReader(args[1])) {
+            int maxCharsInRow = reader.getWidth() / MIN_PIXELS_PER_CHAR;
+            int charsInRow = Math.max(Math.min(options.resolutions[0], maxCharsInRow), 1);
+            String format = options.formats.get(0);
+            int frames = new AnimationCharMatcher(FONT, options.threshold).chooseChars(reader, charsInRow,
+                    parseChars(options.chars), frame -> {
+                        String filename = new File(outputDir, String.format(FRAME_FILE, frame, format)).getPath();
+                        return AsciiOutput.toFile(format, filename, FONT);
+                    });
+            System.out.printf(FRAMES_CONVERTED_MSG, frames);
+        } catch (IOException e) {
+            Logger.getGlobal().severe("Failed to read animation " + args[1]);
+        }
+        saveGlyphCache(options.glyphCache);
+    }
+
+    /**
+     * Converts a single image file while reading it, one band of rows at a time, so images too large to
+     * decode whole can be converted
+     * @param args the command line arguments, starting with the stream flag
+     */
+    private static void runStream(String[] args) {
+        Options options = Options.parse(args);
+        //a stream is converted to a single resolution and format
+        if (options == null || options.resolutions.length != 1 || options.formats.size() != 1 ||
+                !AsciiOutput.FILE_FORMATS.contains(options.formats.get(0))) {
+            System.err.println(USAGE);
+            return;
+        }
+        loadGlyphCache(options.glyphCache);
+        try (ImageBandReader reader = new ImageBandReader(args[1])) {
+            int minCharsInRow = Math.max(1, reader.getWidth() / reader.getHeight());
+            int maxCharsInRow = Math.max(1, reader.getWidth() / MIN_PIXELS_PER_CHAR);
+            int charsInRow = Math.max(Math.min(options.resolutions[0], maxCharsInRow), minCharsInRow);
+            new StreamingImgCharMatcher(FONT).chooseChars(reader, charsInRow, parseChars(options.chars),
+                    AsciiOutput.toFile(options.formats.get(0), args[2], FONT));
+        } catch (IOException e) {
+            Logger.getGlobal().severe("Failed to read image " + args[1]);
+        }
+        saveGlyphCache(options.glyphCache);
+    }
+
+    /**
+     * Serves renders over HTTP on the loopback interface until the process is stopped
+     * @param args the command line arguments, starting with the serve flag
+     */
+    private static void runServer(String[] args) throws IOException {
+        Options options = Options.parse(args, 2);
+        if (options == null || !args[1].matches("\\d{1,5}") || Integer.parseInt(args[1]) > MAX_PORT) {
+            System.err.println(USAGE);
+            return;
+        }
+        loadGlyphCache(options.glyphCache);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> saveGlyphCache(options.glyphCache)));
+        //only local clients, since a request may read any image file the process can read
+        RenderServer server = new RenderServer(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                Integer.parseInt(args[1])), options.workers, options.cacheDir);
+        server.start();
+        System.out.printf(SERVING_MSG, server.getPort());
+    }
+
+    /**
+     * Loads the rendered chars of earlier runs, if the user chose a glyph cache file
+     * @param glyphCache the file, or null for no glyph cache
+     */
+    private static void loadGlyphCache(String glyphCache) {
+        if (glyphCache != null) CharRenderer.loadCache(glyphCache);
+    }
+
+    /**
+     * Saves the rendered chars for later runs, if the user chose a glyph cache file
+     * @param glyphCache the file, or null for no glyph cache
+     */
+    private static void saveGlyphCache(String glyphCache) {
+        if (glyphCache != null) CharRenderer.saveCache(glyphCache);
+    }
+
+    /**
+     * @param outputDir a directory to write to
+     * @return true if the directory exists or was created
+     */
+    private static boolean createOutputDir(File outputDir) {
+        if (outputDir.isDirectory() || outputDir.mkdirs()) return true;
+        Logger.getGlobal().severe("Failed to create output directory " + outputDir);
+        return false;
+    }
+
+    /**
+     * Parses the chars to convert with: "all" for every printable ascii char, a range such as "a-z", or
+     * the chars themselves
+     * @param chars the chars argument
+     * @return the chars
+     */
+    static Character[] parseChars(String chars) {
+        int min, max;
+        if (chars.equals("all")) {
+            min = MIN_ASCII_VAL_ALLOWED;
+            max = MAX_ASCII_VAL_ALLOWED;
+        }
+        else if (chars.length() == 3 && chars.charAt(1) == '-') {
+            min = Math.min(chars.charAt(0), chars.charAt(2));
+            max = Math.max(chars.charAt(0), chars.charAt(2));
+        }
+        else {
+            return chars.chars().distinct().mapToObj(c -> (char) c).toArray(Character[]::new);
+        }
+        List<Character> range = new ArrayList<>();
+        for (int c = min; c <= max; c++) range.add((char) c);
+        return range.toArray(new Character[0]);
     }
-}
\ No newline at end of file
+}
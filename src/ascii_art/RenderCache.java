@@ -0,0 +1,75 @@
+package ascii_art;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of rendered images, bounded by the memory the images take.
+ * Renders are keyed by their resolution and chars. The cached arrays are shared, so callers must not
+ * modify them.
+ */
+class RenderCache {
+    private static final int BYTES_PER_CHAR = Character.BYTES;
+    private static final int BYTES_PER_ROW_OVERHEAD = 16; //the header of each row's array
+    private final long byteBudget;
+    private final LinkedHashMap<String, char[][]> renders = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesUsed = 0;
+
+    /**
+     * Constructor
+     * @param byteBudget the maximal number of bytes the cached renders may take
+     */
+    RenderCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Builds the key of a render. The key doesn't depend on the order of the chars.
+     * @param charsInRow number of chars in a row of the render
+     * @param charSet the chars of the render
+     * @return the key
+     */
+    static String keyOf(int charsInRow, Iterable<Character> charSet) {
+        StringBuilder sortedChars = new StringBuilder();
+        for (char c : charSet) sortedChars.append(c);
+        char[] chars = sortedChars.toString().toCharArray();
+        Arrays.sort(chars);
+        return charsInRow + ":" + new String(chars);
+    }
+
+    /**
+     * @param key the key of the render
+     * @return the cached render, or null if it isn't cached
+     */
+    synchronized char[][] get(String key) {
+        return renders.get(key);
+    }
+
+    /**
+     * Caches a render, evicting the least recently used renders if the budget is exceeded. A render that
+     * is larger than the whole budget isn't cached.
+     * @param key the key of the render
+     * @param render the render
+     */
+    synchronized void put(String key, char[][] render) {
+        long size = sizeOf(render);
+        if (size > byteBudget) return;
+        char[][] previous = renders.put(key, render);
+        if (previous != null) bytesUsed -= sizeOf(previous);
+        bytesUsed += size;
+
+        Iterator<Map.Entry<String, char[][]>> eldest = renders.entrySet().iterator();
+        while (bytesUsed > byteBudget) {
+            bytesUsed -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(char[][] render) {
+        long size = 0;
+        for (char[] row : render) size += (long) row.length * BYTES_PER_CHAR + BYTES_PER_ROW_OVERHEAD;
+        return size;
+    }
+}
@@ -0,0 +1,126 @@
+package ascii_art;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_output.AsciiOutput;
+import image.Image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders one image several times - at several resolutions, with several charsets, to several outputs -
+ * doing the shared work once.
+ * All jobs use one decoded image and one matcher, so each resolution's sub-image brightness is computed
+ * once, and the image's luminance tables are built once for all resolutions. Jobs that have the same
+ * resolution and chars are matched once and written to each of their outputs. The matches run ordered by
+ * resolution and then by chars, so the matcher only rematches the sub-images that a change of chars
+ * affects. For example:
+ *     new RenderPlan(image, font)
+ *             .add(64, digits, AsciiOutput.toFile("html", "out_64.html", font))
+ *             .add(128, digits, AsciiOutput.toFile("html", "out_128.html", font))
+ *             .add(128, digits, AsciiOutput.toFile("txt", "out_128.txt", font))
+ *             .run();
+ */
+public class RenderPlan {
+    private final String fontName;
+    private Image image; //released once the plan is matched
+    private boolean isParallel = false;
+    private final List<Job> jobs = new ArrayList<>();
+    //render key -> the jobs of that resolution and chars, in the order they run
+    private final Map<String, List<Job>> renders = new LinkedHashMap<>();
+    private boolean isMatched = false;
+
+    /**
+     * One resolution, charset and output of the plan
+     */
+    private static class Job {
+        private final int charsInRow;
+        private final Character[] charSet;
+        private final AsciiOutput output;
+        private final String renderKey;
+        private char[][] chars; //shared by the jobs of the same render, after matching
+
+        private Job(int charsInRow, Character[] charSet, AsciiOutput output) {
+            this.charsInRow = charsInRow;
+            this.charSet = charSet;
+            this.output = output;
+            this.renderKey = RenderCache.keyOf(charsInRow, Arrays.asList(charSet));
+        }
+    }
+
+    /**
+     * Constructor
+     * @param image the image to render
+     * @param font the font in which to present the ascii
+     */
+    public RenderPlan(Image image, String font) {
+        this.image = image;
+        this.fontName = font;
+    }
+
+    /**
+     * Adds a job to the plan
+     * @param charsInRow number of ascii chars in a row of the render
+     * @param charSet all the characters available to transform into
+     * @param output where to write the render. it is written only by write or run
+     * @return this plan, to add more jobs to
+     */
+    public RenderPlan add(int charsInRow, Character[] charSet, AsciiOutput output) {
+        if (isMatched) throw new IllegalStateException("The plan was already matched");
+        jobs.add(new Job(charsInRow, charSet, output));
+        return this;
+    }
+
+    /**
+     * Sets whether every match uses all available cores. Both modes give exactly the same chars.
+     * @param isParallel true to match rows in parallel
+     */
+    public void setParallel(boolean isParallel) {
+        this.isParallel = isParallel;
+    }
+
+    /**
+     * Matches every job, then writes every job to its output
+     */
+    public void run() {
+        match();
+        write();
+    }
+
+    /**
+     * Matches every distinct resolution and charset of the jobs once. After matching, the plan no longer
+     * holds the image, so the pixels can be released before the outputs are written.
+     */
+    public void match() {
+        if (isMatched) return;
+        List<Job> ordered = new ArrayList<>(jobs);
+        ordered.sort(Comparator.comparingInt((Job job) -> job.charsInRow)
+                .thenComparing(job -> job.renderKey));
+        for (Job job : ordered) renders.computeIfAbsent(job.renderKey, key -> new ArrayList<>()).add(job);
+
+        BrightnessImgCharMatcher matcher = new BrightnessImgCharMatcher(image, fontName);
+        matcher.setParallel(isParallel);
+        for (List<Job> sameRender : renders.values()) {
+            Job first = sameRender.get(0);
+            char[][] chars = matcher.chooseChars(first.charsInRow, first.charSet);
+            for (Job job : sameRender) job.chars = chars;
+        }
+        image = null;
+        isMatched = true;
+    }
+
+    /**
+     * Writes every job to its output, matching the plan first if it wasn't matched yet. The jobs of each
+     * render are written one after the other, in the order the renders were matched.
+     */
+    public void write() {
+        match();
+        for (List<Job> sameRender : renders.values()) {
+            for (Job job : sameRender) job.output.output(job.chars);
+        }
+    }
+}
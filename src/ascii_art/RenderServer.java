@@ -0,0 +1,441 @@
+package ascii_art;
+
+import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_output.AsciiOutput;
+import ascii_output.BinaryAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import ascii_output.TextAsciiOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import image.Image;
+import image.ImageCache;
+import metrics.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Renders images to ascii art over HTTP, so it can run as a sidecar of another application.
+ *     GET  /render?path=&lt;image file&gt;&amp;res=&lt;chars in row&gt;&amp;chars=&lt;chars | a-z | all&gt;
+ *                 &amp;format=html|txt|bin
+ *     POST /render?res=...&amp;chars=...&amp;format=...   with the image file as the body
+ *     GET  /stats   the metrics of every stage, as text
+ * Each request is handled on its own thread. Decoded images, their sub-image brightness and finished
+ * renders are shared by all requests, and concurrent requests for the same render wait for a single
+ * computation instead of each computing it. At most a fixed number of renders use the CPU at once, so a
+ * burst of requests queues instead of slowing every request down. Clients that accept gzip get the render
+ * compressed.
+ * Memory is bounded too: decoded images are kept up to a budget of their estimated bytes, least recently
+ * used first out, and at most a fixed number of uploads are held in memory at once.
+ */
+public class RenderServer {
+    private static final String FONT = "Courier New";
+    private static final String RENDER_PATH = "/render";
+    private static final String STATS_PATH = "/stats";
+    private static final int DEFAULT_CHARS_IN_ROW = 64;
+    private static final String DEFAULT_CHARS = "0-9";
+    private static final String HTML_FORMAT = "html";
+    private static final String TEXT_FORMAT = "txt";
+    private static final String BINARY_FORMAT = "bin";
+    private static final int MIN_PIXELS_PER_CHAR = 2;
+    private static final int MAX_UPLOAD_BYTES = 64 << 20;
+    private static final int MAX_CONCURRENT_UPLOADS = 4;
+    private static final long IMAGE_CACHE_BYTES = 1L << 30;
+    private static final long MATCHER_CACHE_BYTES = 16L << 20; //the sub-image brightness of each image
+    //the pixels and the luminance summed-area table of an image in memory
+    private static final int BYTES_PER_PIXEL = Integer.BYTES + Long.BYTES;
+    private static final long RENDER_CACHE_BYTES = 256L << 20;
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_BAD_METHOD = 405;
+    private static final int HTTP_TOO_LARGE = 413;
+    private static final int HTTP_UNSUPPORTED_TYPE = 415;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final String HTML_CONTENT_TYPE = "text/html; charset=utf-8";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+    private static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String FAILED_REQUEST_ERR = "Failed to handle request ";
+    private static final String FAILED_RENDER_ERR = "Failed to render";
+    private static final String NOT_AN_IMAGE_ERR = "Not an image";
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final Semaphore renderPermits;
+    private final Semaphore uploadPermits = new Semaphore(MAX_CONCURRENT_UPLOADS);
+    private final ImageCache imageCache;
+    private final RenderCache renderCache = new RenderCache(RENDER_CACHE_BYTES);
+    //image key -> the decoded image, least recently used first. an image that is still being decoded is a
+    //future, so requests for it wait for a single decoding
+    private final LinkedHashMap<String, CompletableFuture<DecodedImage>> images =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long imageBytes = 0; //the estimated bytes of the decoded images in images
+    //render key -> the render being computed for it, which later identical requests wait for
+    private final Map<String, CompletableFuture<char[][]>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * A request that can't be rendered, with the HTTP status that explains why
+     */
+    private static class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        private RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * An image in memory, with the matcher that keeps the brightness of its sub-images between requests
+     */
+    private static class DecodedImage {
+        private final Image image;
+        private final BrightnessImgCharMatcher matcher;
+        private final long bytes; //an estimate of the memory the image and its matcher may take
+
+        private DecodedImage(Image image) {
+            this.image = image;
+            this.matcher = new BrightnessImgCharMatcher(image, FONT, MATCHER_CACHE_BYTES);
+            this.bytes = (long) image.getWidth() * image.getHeight() * BYTES_PER_PIXEL + MATCHER_CACHE_BYTES;
+        }
+    }
+
+    /**
+     * Decodes the image of a request
+     */
+    private interface Decoder {
+        Image decode() throws IOException;
+    }
+
+    /**
+     * Constructor. The server doesn't accept requests until it is started.
+     * @param address the address to listen on
+     * @param workers the number of renders that may use the CPU at once
+     * @param cacheDir a directory to cache decoded image files in, so later runs don't decode them again.
+     *                 null to keep decoded images only in memory
+     * @throws IOException in case the address can't be bound
+     */
+    public RenderServer(InetSocketAddress address, int workers, File cacheDir) throws IOException {
+        renderPermits = new Semaphore(Math.max(workers, 1));
+        imageCache = cacheDir == null ? null : new ImageCache(cacheDir);
+        server = HttpServer.create(address, 0);
+        server.setExecutor(handlers);
+        server.createContext(RENDER_PATH, this::handleRender);
+        server.createContext(STATS_PATH, this::handleStats);
+    }
+
+    /**
+     * Starts accepting requests, on background threads
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, and waits up to a given time for the requests being handled
+     * @param delaySeconds the time to wait
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        handlers.shutdown();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, HTTP_OK, Metrics.report());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleRender(HttpExchange exchange) throws IOException {
+        boolean holdsUpload = false;
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            int charsInRow = parseCharsInRow(params.get("res"));
+            Character[] charSet = Driver.parseChars(params.getOrDefault("chars", DEFAULT_CHARS));
+            if (charSet.length == 0) throw new RequestException(HTTP_BAD_REQUEST, "No chars to render with");
+            String format = params.getOrDefault("format", HTML_FORMAT);
+            if (!List.of(HTML_FORMAT, TEXT_FORMAT, BINARY_FORMAT).contains(format)) {
+                throw new RequestException(HTTP_BAD_REQUEST, "Unknown output format " + format);
+            }
+
+            String imageKey;
+            Decoder decoder;
+            if (exchange.getRequestMethod().equals("GET")) {
+                String path = params.get("path");
+                if (path == null) throw new RequestException(HTTP_BAD_REQUEST, "Missing image path");
+                File file = new File(path);
+                if (!file.isFile()) throw new RequestException(HTTP_NOT_FOUND, "No image file " + path);
+                //a modified file is a different image
+                imageKey = "file:" + file.getCanonicalPath() + ':' + file.lastModified() + ':' +
+                        file.length();
+                decoder = () -> imageCache == null ? Image.fromFile(path) : imageCache.open(path);
+            }
+            else if (exchange.getRequestMethod().equals("POST")) {
+                String length = exchange.getRequestHeaders().getFirst("Content-Length");
+                if (length != null && length.matches("\\d{1,18}") &&
+                        Long.parseLong(length) > MAX_UPLOAD_BYTES) {
+                    throw new RequestException(HTTP_TOO_LARGE, "Image too large");
+                }
+                //every upload is held in memory until it is rendered, so only a few are read at once
+                if (!uploadPermits.tryAcquire()) {
+                    throw new RequestException(HTTP_UNAVAILABLE, "Too many uploads, try again later");
+                }
+                holdsUpload = true;
+                byte[] upload = exchange.getRequestBody().readNBytes(MAX_UPLOAD_BYTES + 1);
+                if (upload.length > MAX_UPLOAD_BYTES) {
+                    throw new RequestException(HTTP_TOO_LARGE, "Image too large");
+                }
+                imageKey = "upload:" + digestOf(upload); //the same upload is the same image
+                decoder = () -> Image.fromStream(new ByteArrayInputStream(upload));
+            }
+            else throw new RequestException(HTTP_BAD_METHOD, "Use GET or POST");
+
+            char[][] chars = render(imageKey, decoder, charsInRow, charSet);
+            exchange.getResponseHeaders().set("Content-Type", format.equals(HTML_FORMAT) ? HTML_CONTENT_TYPE :
+                    format.equals(TEXT_FORMAT) ? TEXT_CONTENT_TYPE : BINARY_CONTENT_TYPE);
+            //ascii art compresses to a fraction of its size, so clients that accept gzip get it
+            boolean isCompressed = acceptsGzip(exchange);
+            if (isCompressed) exchange.getResponseHeaders().set("Content-Encoding", GZIP_ENCODING);
+            exchange.sendResponseHeaders(HTTP_OK, 0); //streamed, so the length isn't known up front
+            OutputStream body = isCompressed ?
+                    new GZIPOutputStream(exchange.getResponseBody()) : exchange.getResponseBody();
+            AsciiOutput output;
+            if (format.equals(BINARY_FORMAT)) output = new BinaryAsciiOutput(body);
+            else {
+                Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+                output = format.equals(HTML_FORMAT) ?
+                        new HtmlAsciiOutput(writer, FONT) : new TextAsciiOutput(writer);
+            }
+            output.output(chars);
+        } catch (RequestException e) {
+            respond(exchange, e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            Logger.getGlobal().severe(FAILED_REQUEST_ERR + exchange.getRequestURI() + ": " + e);
+            //once the headers are sent the status can't change, so the client only sees the body end early
+            if (exchange.getResponseCode() == -1) respond(exchange, HTTP_SERVER_ERROR, FAILED_RENDER_ERR);
+        } finally {
+            if (holdsUpload) uploadPermits.release();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns a render, from the cache if it was already computed. A request for a render that another
+     * request is computing waits for that computation.
+     * @param imageKey identifies the image
+     * @param decoder decodes the image if it isn't in memory
+     * @param charsInRow number of ascii chars in a row. clamped to what the image allows
+     * @param charSet the chars to render with
+     * @return the render. shared, so it must not be modified
+     * @throws RequestException in case the image can't be decoded
+     */
+    private char[][] render(String imageKey, Decoder decoder, int charsInRow, Character[] charSet)
+            throws RequestException {
+        String renderKey = imageKey + '|' + RenderCache.keyOf(charsInRow, Arrays.asList(charSet));
+        char[][] cached = renderCache.get(renderKey);
+        if (cached != null) return cached;
+
+        CompletableFuture<char[][]> computed = new CompletableFuture<>();
+        CompletableFuture<char[][]> running = inFlight.putIfAbsent(renderKey, computed);
+        if (running == null) {
+            try {
+                renderPermits.acquireUninterruptibly();
+                try {
+                    DecodedImage decoded = decode(imageKey, decoder);
+                    char[][] chars = decoded.matcher.chooseChars(clamp(charsInRow, decoded.image), charSet);
+                    renderCache.put(renderKey, chars); //before leaving inFlight, so later requests find it
+                    computed.complete(chars);
+                } finally {
+                    renderPermits.release();
+                }
+            } catch (RequestException | RuntimeException e) {
+                computed.completeExceptionally(e);
+            } finally {
+                //does nothing if the render completed, and otherwise releases the waiting requests
+                computed.completeExceptionally(new IllegalStateException(FAILED_RENDER_ERR));
+                inFlight.remove(renderKey, computed);
+            }
+            running = computed;
+        }
+        return await(running);
+    }
+
+    /**
+     * Returns an image from memory, decoding it if it isn't there. Requests for an image that another
+     * request is decoding wait for that decoding.
+     * @param imageKey identifies the image
+     * @param decoder decodes the image
+     * @return the image
+     * @throws RequestException in case the image can't be decoded
+     */
+    private DecodedImage decode(String imageKey, Decoder decoder) throws RequestException {
+        CompletableFuture<DecodedImage> image, decoding = null;
+        synchronized (images) {
+            image = images.get(imageKey);
+            if (image == null) {
+                image = decoding = new CompletableFuture<>();
+                images.put(imageKey, decoding);
+            }
+        }
+        if (decoding != null) {
+            try {
+                Image decoded = decoder.decode();
+                if (decoded == null) throw new RequestException(HTTP_UNSUPPORTED_TYPE, NOT_AN_IMAGE_ERR);
+                DecodedImage decodedImage = new DecodedImage(decoded);
+                decoding.complete(decodedImage);
+                synchronized (images) {
+                    if (images.get(imageKey) == decoding) {
+                        imageBytes += decodedImage.bytes;
+                        evictImages();
+                    }
+                }
+            } catch (IOException | RequestException | RuntimeException e) {
+                decoding.completeExceptionally(e);
+            } finally {
+                decoding.completeExceptionally(new IllegalStateException(FAILED_RENDER_ERR));
+                if (decoding.isCompletedExceptionally()) {
+                    synchronized (images) {
+                        images.remove(imageKey, decoding); //a later request may try again. never counted
+                    }
+                }
+            }
+        }
+        return await(image);
+    }
+
+    /**
+     * Removes the least recently used decoded images until the images fit in their budget. Images that are
+     * still being decoded aren't counted yet, so they stay. Requests that already hold a removed image
+     * finish with it. Must be called while holding the lock of images
+     */
+    private void evictImages() {
+        Iterator<CompletableFuture<DecodedImage>> eldest = images.values().iterator();
+        while (imageBytes > IMAGE_CACHE_BYTES && eldest.hasNext()) {
+            CompletableFuture<DecodedImage> image = eldest.next();
+            if (!image.isDone() || image.isCompletedExceptionally()) continue;
+            imageBytes -= image.join().bytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Waits for a computation, which may be running on another request's thread
+     * @param future the computation
+     * @return its result
+     * @throws RequestException in case the computation failed on a bad request
+     */
+    private static <T> T await(CompletableFuture<T> future) throws RequestException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RequestException) throw (RequestException) cause;
+            if (cause instanceof IOException) {
+                throw new RequestException(HTTP_UNSUPPORTED_TYPE, NOT_AN_IMAGE_ERR);
+            }
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * @param charsInRow the requested number of chars in a row
+     * @param image the image to render
+     * @return the number of chars in a row, within the limits of the image
+     */
+    private static int clamp(int charsInRow, Image image) {
+        int minCharsInRow = Math.max(1, image.getWidth() / image.getHeight());
+        int maxCharsInRow = Math.max(1, image.getWidth() / MIN_PIXELS_PER_CHAR);
+        return Math.max(Math.min(charsInRow, maxCharsInRow), minCharsInRow);
+    }
+
+    private static int parseCharsInRow(String res) throws RequestException {
+        if (res == null) return DEFAULT_CHARS_IN_ROW;
+        try {
+            int charsInRow = Integer.parseInt(res);
+            if (charsInRow > 0) return charsInRow;
+        } catch (NumberFormatException e) {
+            //reported below
+        }
+        throw new RequestException(HTTP_BAD_REQUEST, "Bad resolution " + res);
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        for (String accepted : exchange.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+            for (String encoding : accepted.split(",")) {
+                if (encoding.trim().startsWith(GZIP_ENCODING)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) return params;
+        for (String param : query.split("&")) {
+            int separator = param.indexOf('=');
+            if (separator < 0) continue;
+            params.put(URLDecoder.decode(param.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(param.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String digestOf(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //every JVM has SHA-256
+        }
+    }
+
+    /**
+     * Sends a short plain text response
+     */
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + '\n').getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package ascii_art;
 
 import ascii_art.img_to_char.BrightnessImgCharMatcher;
+import ascii_art.img_to_char.ShapeImgCharMatcher;
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
 import image.Image;
+import metrics.Metrics;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 public class Shell {
     private static final int INITIAL_CHARS_IN_ROW = 64;
@@ -25,6 +38,7 @@ public class Shell {
     private static final char ASCII_RANGE_SEPARATOR = '-';
     private static final String FONT = "Courier New";
     private static final String HTML_FILE = "out.html";
+    private static final long RENDER_CACHE_BYTES = 64L << 20;
     private static final Character[] INIT_CHARSET_VALUES = {'0','1','2','3','4','5','6','7','8','9'};
     private static final String INCORRECT_FORMAT_ERR_ADD = "Did not add due to incorrect format";
     private static final String INCORRECT_FORMAT_ERR_REMOVE = "Did not remove due to incorrect format";
@@ -32,26 +46,104 @@ public class Shell {
     private static final String RESOLUTION_LIMIT_ERR = "Did not change due to exceeding boundaries";
     private static final String RESOLUTION_CHANGED_MSG = "Width set to ";
     private static final String CHARS_REMOVED = "All characters were removed!";
+    private static final String PARALLEL_ON_MSG = "Parallel rendering on";
+    private static final String PARALLEL_OFF_MSG = "Parallel rendering off";
+    private static final String STATS_RESET_MSG = "Statistics were reset";
+    private static final String COLOR_ON_MSG = "Color output on";
+    private static final String COLOR_OFF_MSG = "Color output off";
+    private static final String SHAPE_ON_MSG = "Matching chars by shape";
+    private static final String SHAPE_OFF_MSG = "Matching chars by brightness";
+    private static final String SHAPE_RENDER_KEY_PREFIX = "shape:";
+    private static final String RENDER_FAILED_ERR = "Failed to render: ";
+    private static final String NO_IMAGE_ERR = "Did not executed since the image failed to load";
+    private static final String RENDER_THREAD_NAME = "shell-render";
+    private static final String SPECULATION_THREAD_NAME = "shell-speculative-render";
+    //the commands that can't run before the image is decoded
+    private static final Set<String> IMAGE_COMMANDS = Set.of("res", "parallel", "render");
     private static final String AGAIN_CODE = "again";
     private static final String EXIT_CODE = "exit";
     private static final String NEW_LINE_PROMPT = ">>>";
     private final HashSet<Character> charSet = new HashSet<>();
+    //a copy of charSet, for the thread that decodes the image
+    private volatile Character[] currentChars;
     private int charsInRow;
-    private final int minCharsInRow;
-    private final int maxCharsInRow;
-    private final Image image;
+    private final CompletableFuture<LoadedImage> loading;
+    private LoadedImage loaded; //null until a command needed the image
+    private final RenderCache renderCache = new RenderCache(RENDER_CACHE_BYTES);
+    //renders run one at a time off the input thread, so the prompt is back while the html is written
+    private final ExecutorService renderThread = newDaemonThread(RENDER_THREAD_NAME, Thread.NORM_PRIORITY);
+    //renders of the neighbouring resolutions, computed ahead of time. null when there are no spare cores
+    private final ExecutorService speculationThread = Runtime.getRuntime().availableProcessors() > 1 ?
+            newDaemonThread(SPECULATION_THREAD_NAME, Thread.MIN_PRIORITY) : null;
+    private final List<Future<?>> speculativeRenders = new ArrayList<>();
+    private Future<?> inFlightRender;
     private boolean isOutputConsole = false;
+    private volatile boolean isParallel = false;
+    private boolean isColor = false;
+    private volatile boolean isShapeMatching = false;
+
+    /**
+     * The decoded image, along with everything that depends on it
+     */
+    private static class LoadedImage {
+        private final int minCharsInRow;
+        private final int maxCharsInRow;
+        private final BrightnessImgCharMatcher matcher;
+        private final ShapeImgCharMatcher shapeMatcher;
+
+        private LoadedImage(Image image) {
+            minCharsInRow = Math.max(1, image.getWidth()/image.getHeight());
+            maxCharsInRow = image.getWidth() / MIN_PIXELS_PER_CHAR;
+            matcher = new BrightnessImgCharMatcher(image, FONT);
+            shapeMatcher = new ShapeImgCharMatcher(image, FONT);
+        }
+
+        /**
+         * @param charsInRow a number of chars in a row
+         * @return the closest number of chars in a row the image allows
+         */
+        private int clamp(int charsInRow) {
+            return Math.max(Math.min(charsInRow, maxCharsInRow), minCharsInRow);
+        }
+
+        /**
+         * @param charsInRow a number of chars in a row the image allows
+         * @return the numbers of chars in a row that "res up" and "res down" change it to, if they change it
+         */
+        private int[] neighboursOf(int charsInRow) {
+            return IntStream.of(clamp(charsInRow * RESIZE_FACTOR), clamp(charsInRow / RESIZE_FACTOR))
+                    .filter(neighbour -> neighbour != charsInRow).distinct().toArray();
+        }
+    }
 
     /**
      * Constructor
      * @param image an image file to create the shell around
      */
     public Shell(Image image){
+        this(CompletableFuture.completedFuture(image));
+    }
+
+    /**
+     * Constructor of a shell whose image is still being decoded. The prompt is shown right away, and only
+     * commands that need the image wait for it. Once it is decoded, the first render and its neighbouring
+     * resolutions are computed on spare cores, before they are asked for.
+     * @param image the image file to create the shell around, or null if it failed to decode
+     */
+    public Shell(CompletableFuture<Image> image){
         charSet.addAll(Arrays.asList(INIT_CHARSET_VALUES));
-        minCharsInRow = Math.max(1, image.getWidth()/image.getHeight());
-        maxCharsInRow = image.getWidth() / MIN_PIXELS_PER_CHAR;
-        charsInRow = Math.max(Math.min(INITIAL_CHARS_IN_ROW, maxCharsInRow), minCharsInRow);
-        this.image = image;
+        currentChars = INIT_CHARSET_VALUES.clone();
+        charsInRow = INITIAL_CHARS_IN_ROW;
+        loading = image.handle((decoded, error) -> decoded == null ? null : new LoadedImage(decoded));
+        loading.thenAccept(decoded -> {
+            if(decoded == null) return;
+            //the chars and matching may have changed while the image was decoded
+            Character[] chars = currentChars;
+            boolean byShape = isShapeMatching;
+            int initialCharsInRow = decoded.clamp(INITIAL_CHARS_IN_ROW);
+            speculate(decoded, chars, byShape, new int[]{initialCharsInRow});
+            speculate(decoded, chars, byShape, decoded.neighboursOf(initialCharsInRow));
+        });
     }
 
     /**
@@ -62,8 +154,24 @@ public class Shell {
 
         while(true){
             System.out.print(NEW_LINE_PROMPT);
-            if(commandFactory(userInput.nextLine().split(" ")).equals(EXIT_CODE)) return;
+            if(commandFactory(userInput.nextLine().split(" ")).equals(EXIT_CODE)) break;
+        }
+        awaitRender();
+        cancelSpeculation();
+        renderThread.shutdown();
+        if(speculationThread != null) speculationThread.shutdownNow();
+    }
+
+    /**
+     * Waits for the image to be decoded, if it wasn't already
+     * @return the decoded image, or null if it failed to decode
+     */
+    private LoadedImage awaitImage(){
+        if(loaded == null){
+            loaded = loading.join();
+            if(loaded != null) charsInRow = loaded.clamp(charsInRow);
         }
+        return loaded;
     }
 
     /**
@@ -72,6 +180,10 @@ public class Shell {
      */
     private String commandFactory(String[] inputParts){
         if(inputParts.length > MAX_WORDS || inputParts.length == MIN_WORDS) inputParts[0] = AGAIN_CODE;
+        if(IMAGE_COMMANDS.contains(inputParts[0]) && awaitImage() == null){
+            System.out.println(NO_IMAGE_ERR);
+            return AGAIN_CODE;
+        }
 
         switch(inputParts[0]){
             case "exit":
@@ -91,9 +203,21 @@ public class Shell {
             case "console":
                 isOutputConsole = true;
                 break;
+            case "parallel":
+                toggleParallel(inputParts);
+                break;
+            case "color":
+                toggleColor(inputParts);
+                break;
+            case "shape":
+                toggleShapeMatching(inputParts);
+                break;
             case "render":
                 renderImage();
                 break;
+            case "stats":
+                printStats(inputParts);
+                break;
             default:
                 System.out.println(INCORRECT_COMMAND_ERR);
                 break;
@@ -140,7 +264,11 @@ public class Shell {
         }
         else{
             System.out.println(errorMessage);
+            return;
         }
+        currentChars = charSet.toArray(new Character[0]);
+        cancelRender();
+        cancelSpeculation();
     }
 
     /**
@@ -161,35 +289,218 @@ public class Shell {
     private void changeResolution(String[] inputParts){
         if(inputParts.length != CORRECT_LONG_INPUT_LENGTH) System.out.println(INCORRECT_COMMAND_ERR);
         else if(inputParts[1].equals("up")){
-            if(charsInRow == maxCharsInRow) System.out.println(RESOLUTION_LIMIT_ERR);
-            else{
-                charsInRow *= RESIZE_FACTOR;
-                System.out.println(RESOLUTION_CHANGED_MSG + charsInRow);
-            }
+            if(charsInRow == loaded.maxCharsInRow) System.out.println(RESOLUTION_LIMIT_ERR);
+            else setResolution(Math.min(charsInRow * RESIZE_FACTOR, loaded.maxCharsInRow));
         }
         else if (inputParts[1].equals("down")){
-            if(charsInRow == minCharsInRow) System.out.println(RESOLUTION_LIMIT_ERR);
-            else{
-                charsInRow /= RESIZE_FACTOR;
-                System.out.println(RESOLUTION_CHANGED_MSG + charsInRow);
+            if(charsInRow == loaded.minCharsInRow) System.out.println(RESOLUTION_LIMIT_ERR);
+            else setResolution(Math.max(charsInRow / RESIZE_FACTOR, loaded.minCharsInRow));
+        }
+        else if (inputParts[1].matches("\\d{1,9}")){ //any number of chars in a row within the limits
+            int requested = Integer.parseInt(inputParts[1]);
+            if(requested < loaded.minCharsInRow || requested > loaded.maxCharsInRow){
+                System.out.println(RESOLUTION_LIMIT_ERR);
             }
+            else setResolution(requested);
+        }
+        else System.out.println(INCORRECT_COMMAND_ERR);
+    }
+
+    /**
+     * Sets the number of chars in a row and reports it
+     * @param newCharsInRow the new number of chars in a row
+     */
+    private void setResolution(int newCharsInRow){
+        charsInRow = newCharsInRow;
+        cancelRender();
+        System.out.println(RESOLUTION_CHANGED_MSG + charsInRow);
+    }
+
+    /**
+     * Switches rendering between all cores and a single thread
+     * @param inputParts user input (is verified by this function)
+     */
+    private void toggleParallel(String[] inputParts){
+        if(inputParts.length != CORRECT_SHORT_INPUT_LENGTH) {
+            System.out.println(INCORRECT_COMMAND_ERR);
+            return;
+        }
+        isParallel = !isParallel;
+        loaded.matcher.setParallel(isParallel);
+        loaded.shapeMatcher.setParallel(isParallel);
+        System.out.println(isParallel ? PARALLEL_ON_MSG : PARALLEL_OFF_MSG);
+    }
+
+    /**
+     * Switches rendering between colored and plain chars
+     * @param inputParts user input (is verified by this function)
+     */
+    private void toggleColor(String[] inputParts){
+        if(inputParts.length != CORRECT_SHORT_INPUT_LENGTH) {
+            System.out.println(INCORRECT_COMMAND_ERR);
+            return;
+        }
+        isColor = !isColor;
+        cancelRender();
+        System.out.println(isColor ? COLOR_ON_MSG : COLOR_OFF_MSG);
+    }
+
+    /**
+     * Switches matching chars between their shape and only their brightness
+     * @param inputParts user input (is verified by this function)
+     */
+    private void toggleShapeMatching(String[] inputParts){
+        if(inputParts.length != CORRECT_SHORT_INPUT_LENGTH) {
+            System.out.println(INCORRECT_COMMAND_ERR);
+            return;
+        }
+        isShapeMatching = !isShapeMatching;
+        cancelRender();
+        cancelSpeculation();
+        System.out.println(isShapeMatching ? SHAPE_ON_MSG : SHAPE_OFF_MSG);
+    }
+
+    /**
+     * Prints the time and allocations of every stage since startup, or resets them on "stats reset"
+     * @param inputParts user input (is verified by this function)
+     */
+    private void printStats(String[] inputParts){
+        if(inputParts.length == CORRECT_SHORT_INPUT_LENGTH) System.out.print(Metrics.report());
+        else if(inputParts[1].equals("reset")){
+            Metrics.reset();
+            System.out.println(STATS_RESET_MSG);
         }
         else System.out.println(INCORRECT_COMMAND_ERR);
     }
 
     /**
-     * Renders the image on either html file (default) or console
+     * Renders the image on either html file (default) or console, in color if color is on. The render runs
+     * on the render thread with the settings of this moment, and the html render runs in the background
+     * while the next commands are read. A console render is waited for, so the chars aren't printed over
+     * the prompt. The neighbouring resolutions are then computed ahead on a spare core
      */
     private void renderImage(){
-        char[][] imageAsAscii = new BrightnessImgCharMatcher(image,FONT).chooseChars
-                (charsInRow,charSet.toArray(new Character[0]));
+        //the render thread gets a copy of the settings, since the next commands may change them
+        Character[] chars = charSet.toArray(new Character[0]);
+        LoadedImage image = loaded;
+        int res = charsInRow;
+        boolean byShape = isShapeMatching, inColor = isColor, toConsole = isOutputConsole;
+        inFlightRender = renderThread.submit(() -> render(image, res, chars, byShape, inColor, toConsole));
         if(isOutputConsole){
-            new ConsoleAsciiOutput().output(imageAsAscii);
+            awaitRender();
             isOutputConsole = false;
         }
-        else{
-            new HtmlAsciiOutput(HTML_FILE,FONT).output(imageAsAscii);
+        speculate(image, chars, byShape, image.neighboursOf(res));
+    }
+
+    /**
+     * Renders the image and outputs it. Stops without output once the render is cancelled
+     * @param image the decoded image
+     * @param charsInRow number of chars in a row
+     * @param chars the chars to render with
+     * @param byShape true to match the chars by shape
+     * @param inColor true to output the chars in color
+     * @param toConsole true to output to the console, false to the html file
+     */
+    private void render(LoadedImage image, int charsInRow, Character[] chars, boolean byShape,
+                        boolean inColor, boolean toConsole){
+        try {
+            char[][] imageAsAscii = chooseChars(image, charsInRow, chars, byShape);
+            //the colors depend only on the resolution, so the matcher keeps them and no cache is needed
+            int[][] colors = inColor ? image.matcher.chooseColors(charsInRow) : null;
+            if(Thread.currentThread().isInterrupted()) return;
+            if(toConsole) new ConsoleAsciiOutput().output(imageAsAscii, colors);
+            else new HtmlAsciiOutput(HTML_FILE,FONT).output(imageAsAscii, colors);
+        } catch (CancellationException e) {
+            //the settings changed while matching, so the render is no longer wanted
+        } catch (RuntimeException e) {
+            Logger.getGlobal().severe(RENDER_FAILED_ERR + e);
         }
     }
-}
 
+    /**
+     * Finds the chars of a render, in the render cache or by matching them and caching the result
+     * @param image the decoded image
+     * @param charsInRow number of chars in a row
+     * @param chars the chars to render with
+     * @param byShape true to match the chars by shape
+     * @return the chars of the render
+     * @throws CancellationException in case the calling thread is interrupted while matching
+     */
+    private char[][] chooseChars(LoadedImage image, int charsInRow, Character[] chars, boolean byShape){
+        //an unchanged resolution and charset give the same chars, so a render that was seen is reused
+        String renderKey = RenderCache.keyOf(charsInRow, Arrays.asList(chars));
+        if(byShape) renderKey = SHAPE_RENDER_KEY_PREFIX + renderKey;
+        char[][] imageAsAscii = renderCache.get(renderKey);
+        if(imageAsAscii == null){
+            imageAsAscii = byShape ? image.shapeMatcher.chooseChars(charsInRow, chars) :
+                    image.matcher.chooseChars(charsInRow, chars);
+            renderCache.put(renderKey, imageAsAscii);
+        }
+        return imageAsAscii;
+    }
+
+    /**
+     * Computes renders ahead of time on the speculation thread, into the render cache, if there are spare
+     * cores. The thread has the lowest priority, so it yields to the renders that were asked for
+     * @param image the decoded image
+     * @param chars the chars to render with
+     * @param byShape true to match the chars by shape
+     * @param resolutions the numbers of chars in a row to render
+     */
+    private void speculate(LoadedImage image, Character[] chars, boolean byShape, int[] resolutions){
+        if(speculationThread == null) return;
+        synchronized (speculativeRenders) {
+            speculativeRenders.removeIf(Future::isDone);
+            for(int res : resolutions){
+                speculativeRenders.add(speculationThread.submit(() ->
+                        chooseChars(image, res, chars, byShape)));
+            }
+        }
+    }
+
+    /**
+     * Cancels the render in flight, since the settings it was started with changed
+     */
+    private void cancelRender(){
+        if(inFlightRender != null) inFlightRender.cancel(true);
+    }
+
+    /**
+     * Cancels the renders computed ahead of time, since they were started with chars that changed
+     */
+    private void cancelSpeculation(){
+        synchronized (speculativeRenders) {
+            for(Future<?> speculativeRender : speculativeRenders) speculativeRender.cancel(true);
+            speculativeRenders.clear();
+        }
+    }
+
+    /**
+     * Waits for the render in flight to finish, if there is one
+     */
+    private void awaitRender(){
+        if(inFlightRender == null) return;
+        try {
+            inFlightRender.get();
+        } catch (CancellationException | ExecutionException e) {
+            //a cancelled render outputs nothing, and render reports its own failures
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param name the name of the thread
+     * @param priority the priority of the thread
+     * @return a single thread executor whose thread doesn't keep the application alive
+     */
+    private static ExecutorService newDaemonThread(String name, int priority){
+        return Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        });
+    }
+}
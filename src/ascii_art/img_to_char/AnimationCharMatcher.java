@@ -0,0 +1,130 @@
+package ascii_art.img_to_char;
+
+import ascii_output.AsciiOutput;
+import image.FrameReader;
+import image.Image;
+import metrics.Metrics;
+import metrics.Stage;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntFunction;
+
+/**
+ * Translates the frames of an animation to chars.
+ * Frames are decoded on a background thread while the previous frame is matched, into a small pool of
+ * frame buffers that is reused for the whole animation. A sub-image whose brightness changed by no more
+ * than a threshold since its char was chosen keeps that char, so still parts of the animation are not
+ * matched again.
+ */
+public class AnimationCharMatcher {
+    private static final int CHAR_RESOLUTION = MatcherSupport.CHAR_RESOLUTION;
+    private static final int FRAME_BUFFERS = 3; //one being decoded, one being matched, one ready
+    private static final int END_OF_FRAMES = -1; //passed instead of a frame buffer index after the last frame
+    private final String fontName;
+    private final float threshold;
+
+    /**
+     * Constructor
+     * @param font the font in which to present the ascii
+     * @param threshold the largest change in the brightness of a sub-image (between 0 and 1) that keeps
+     *                  its char. 0 matches every sub-image that changed at all
+     */
+    public AnimationCharMatcher(String font, float threshold){
+        this.fontName = font;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Replaces the pixels of every frame with ascii chars
+     * @param reader a reader of the animation
+     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
+     * @param charSet all the characters available to transform into
+     * @param outputForFrame gives the output of each frame, by its index
+     * @return the number of frames
+     * @throws IOException in case reading a frame fails. an unchecked exception or error of the decoding is
+     * rethrown as it is
+     * @throws InterruptedException in case the calling thread is interrupted while waiting for a frame
+     */
+    public int chooseChars(FrameReader reader, int numCharsInRow, Character[] charSet,
+                           IntFunction<AsciiOutput> outputForFrame) throws IOException, InterruptedException {
+        SubImageGrid grid = new SubImageGrid(reader.getWidth(), reader.getHeight(), numCharsInRow);
+        int rows = grid.getRows();
+        CharPalette palette = new CharPalette(charSet, CHAR_RESOLUTION, fontName);
+        char[][] charsImage = new char[rows][numCharsInRow];
+        float[][] matchedBrightness = new float[rows][numCharsInRow]; //the brightness each char was chosen by
+
+        //frame buffers are passed between the threads by their index
+        Image[] frames = new Image[FRAME_BUFFERS];
+        BlockingQueue<Integer> freeFrames = new ArrayBlockingQueue<>(FRAME_BUFFERS);
+        BlockingQueue<Integer> readFrames = new ArrayBlockingQueue<>(FRAME_BUFFERS + 1);
+        for (int i = 0; i < FRAME_BUFFERS; i++) {
+            frames[i] = reader.newFrame();
+            freeFrames.add(i);
+        }
+        Throwable[] decodeError = new Throwable[1];
+        Thread decoder = new Thread(() -> decodeFrames(reader, frames, freeFrames, readFrames, decodeError));
+        decoder.setDaemon(true);
+        decoder.start();
+
+        int frameIndex = 0;
+        try {
+            for (int buffer = readFrames.take(); buffer != END_OF_FRAMES; buffer = readFrames.take()) {
+                Image frame = frames[buffer];
+                boolean isFirstFrame = frameIndex == 0;
+                Metrics.time(Stage.MATCH, () -> {
+                    for (int row = 0; row < rows; row++) {
+                        for (int col = 0; col < numCharsInRow; col++) {
+                            float brightness = grid.brightness(frame, 0, row, col);
+                            if (!isFirstFrame &&
+                                    Math.abs(brightness - matchedBrightness[row][col]) <= threshold) {
+                                continue;
+                            }
+                            charsImage[row][col] = palette.closestChar(brightness);
+                            matchedBrightness[row][col] = brightness;
+                        }
+                    }
+                });
+                freeFrames.put(buffer);
+                outputForFrame.apply(frameIndex++).output(charsImage);
+            }
+        } finally {
+            decoder.interrupt();
+        }
+        decoder.join();
+        Throwable error = decodeError[0];
+        if (error instanceof IOException) throw (IOException) error;
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error instanceof Error) throw (Error) error;
+        return frameIndex;
+    }
+
+    /**
+     * Reads frames into free frame buffers until the animation ends or decoding fails, then passes the end
+     * on, so the matcher stops waiting for frames however the reading stopped
+     * @param reader a reader of the animation
+     * @param frames the frame buffers
+     * @param freeFrames indices of frame buffers that can be read into
+     * @param readFrames indices of frame buffers that were read, in order
+     * @param decodeError receives the exception or error that stopped the reading, if any
+     */
+    private static void decodeFrames(FrameReader reader, Image[] frames, BlockingQueue<Integer> freeFrames,
+                                     BlockingQueue<Integer> readFrames, Throwable[] decodeError) {
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                int buffer = freeFrames.take();
+                if (!reader.readFrame(frames[buffer])) break;
+                readFrames.put(buffer);
+            }
+        } catch (InterruptedException e) {
+            isInterrupted = true; //the matcher stopped early, and no longer waits for frames
+        } catch (IOException | RuntimeException | Error e) { //such as a malformed frame or its metadata
+            decodeError[0] = e;
+        } finally {
+            //never blocks: every buffer but the taken one may be queued
+            if (!isInterrupted) readFrames.offer(END_OF_FRAMES);
+        }
+    }
+}
@@ -1,25 +1,26 @@
 package ascii_art.img_to_char;
 
 import image.Image;
+import metrics.Metrics;
+import metrics.Stage;
 
-import java.awt.*;
-import java.util.*;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
 
 public class BrightnessImgCharMatcher {
-    private static final int CHAR_RESOLUTION = 16;
-    private static final int MAX_RGB = 255;
-    private static final float BALANCE_RED = (float) 0.2126;
-    private static final float BALANCE_GREEN = (float) 0.7152;
-    private static final float BALANCE_BLUE = (float) 0.0722;
-    private float minBrightness = 1;
-    private float maxBrightness = 0;
+    /** The default number of bytes the sub-images of all resolutions may take */
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+    private static final int CHAR_RESOLUTION = MatcherSupport.CHAR_RESOLUTION;
+    //brightness, sorted brightness and index, last char and color of a sub-image
+    private static final int BYTES_PER_SUB_IMAGE = Float.BYTES * 2 + Integer.BYTES * 2 + Character.BYTES;
+    private static final int BYTES_PER_ROW_OVERHEAD = 3 * 16; //the headers of each row's arrays
     private final Image image;
     private final String fontName;
-    private final HashMap<Character,Float> actualCharsBrightnessMap = new HashMap<>();
-    //the map above represents the current chars that will be used to render the image
-    private final HashMap<Character,Float> computedCharsBrightnessMap = new HashMap<>();
-    //the map above represents any char that was ever used to render the image (hence its brightness was
-    // calculated)
+    private volatile boolean isParallel = false;
+    //number of chars in a row -> the sub-images at that resolution. the brightness of a sub-image doesn't
+    //depend on the chars, so changing only the chars skips the pixels entirely
+    private final SizedCache<Integer, SubImages> subImagesCache;
 
     /**
      * Constructor
@@ -27,138 +28,223 @@ public class BrightnessImgCharMatcher {
      * @param font the font in which to present the ascii
      */
     public BrightnessImgCharMatcher(Image image, String font){
+        this(image, font, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Constructor
+     * @param image the given image to transform into ascii
+     * @param font the font in which to present the ascii
+     * @param cacheBytes the maximal number of bytes the sub-images of all resolutions may take. the least
+     *                   recently used resolutions are computed again once they don't fit
+     */
+    public BrightnessImgCharMatcher(Image image, String font, long cacheBytes){
         this.image  = image;
         this.fontName = font;
+        this.subImagesCache = new SizedCache<>(cacheBytes, subImages -> subImages.bytes);
     }
 
     /**
-     * A function that replaces amount of pixels with ascii chars
-     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
-     * @param charSet all the characters available to transform into
-     * @return a 2D matrix with the ascii chars
+     * Sets whether chooseChars matches the rows of the image on all available cores (using the common
+     * fork-join pool) or on the calling thread. Both modes return exactly the same chars.
+     * @param isParallel true to match rows in parallel
      */
-    public char[][] chooseChars(int numCharsInRow, Character[] charSet){
-        char[][] charsImage = new char[image.getHeight() / (image.getWidth()/numCharsInRow)][numCharsInRow];
-
-        updateCorrectChars(charSet);
-        Image[][] subImages = image.createSubImages(image.getWidth()/numCharsInRow);
+    public void setParallel(boolean isParallel){
+        this.isParallel = isParallel;
+    }
 
-        for (int row = 0; row < subImages.length; row++) {
-            for (int col = 0; col < subImages[row].length; col++) {
-                float subImageBrightness = computeSubImageBrightness(subImages[row][col]);
-                charsImage[row][col] = replaceSubImageWithChar(subImageBrightness);
+    /**
+     * The sub-images of the image at one resolution, along with the last chars chosen for them
+     */
+    private static class SubImages {
+        private final float[][] brightness; //by row and column
+        private final float[] sortedBrightness; //the brightness of all sub-images, ascending
+        private final int[] sortedIndices; //row * number of chars in row + column, in the same order
+        private CharPalette lastPalette;
+        private char[][] lastChars;
+        private int[][] colors; //computed on the first request for colors
+        //the bytes the sub-images take once their chars and colors are computed too
+        private final long bytes;
+
+        private SubImages(float[][] brightness) {
+            this.brightness = brightness;
+            int cols = brightness.length == 0 ? 0 : brightness[0].length;
+            bytes = (long) brightness.length * cols * BYTES_PER_SUB_IMAGE +
+                    (long) brightness.length * BYTES_PER_ROW_OVERHEAD;
+            //brightness is non negative, so its float bits sort like the float itself
+            long[] sortKeys = new long[brightness.length * cols];
+            for (int row = 0; row < brightness.length; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int index = row * cols + col;
+                    sortKeys[index] = ((long) Float.floatToIntBits(brightness[row][col]) << Integer.SIZE) | index;
+                }
+            }
+            Arrays.sort(sortKeys);
+            sortedBrightness = new float[sortKeys.length];
+            sortedIndices = new int[sortKeys.length];
+            for (int i = 0; i < sortKeys.length; i++) {
+                sortedBrightness[i] = Float.intBitsToFloat((int) (sortKeys[i] >>> Integer.SIZE));
+                sortedIndices[i] = (int) sortKeys[i];
             }
         }
-        return charsImage;
     }
 
     /**
-     * Checks chars given by user input and:
-     * 1. if char was never used to render image, compute its brightness and insert it to the map of chars
-     * currently used to render the image
-     * 2. if char was used to render image, but not the last one, its brightness computed at some time. get
-     * its brightness (saved in a hash map) and insert it to the map of chars currently used to render the
-     * image
-     * 3. if the char was used in the last render, do nothing (its already in the relevant hash map)
-     * @param charArray array of chars to render the image from.
+     * A function that replaces amount of pixels with ascii chars.
+     * When the image was already rendered at this resolution, only the sub-images whose brightness falls
+     * where the new chars choose differently from the previous chars are matched again.
+     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
+     * @param charSet all the characters available to transform into
+     * @return a 2D matrix with the ascii chars. the matcher keeps it, so it must not be modified
+     * @throws CancellationException in case the calling thread is interrupted while matching
      */
-    private void updateCorrectChars(Character[] charArray){
-        HashSet<Character> charSet = new HashSet<>(Arrays.asList(charArray)); //faster to find items in a set
-        //if user didn't send a specific char, but that char is found in the map of the chars to render,
-        // remove that char from the map
-        for(Character c : actualCharsBrightnessMap.keySet()){
-            if(!charSet.contains(c)) actualCharsBrightnessMap.remove(c);
-        }
-        Character[] newChars = new Character[charArray.length]; //the new chars to check their brightness
-        for(int i = 0; i< charArray.length; ++i){
-            if(!computedCharsBrightnessMap.containsKey(charArray[i])) newChars[i] = charArray[i];
-            else if (!actualCharsBrightnessMap.containsKey(charArray[i])) {
-                actualCharsBrightnessMap.put(charArray[i], computedCharsBrightnessMap.get(charArray[i]));
+    public char[][] chooseChars(int numCharsInRow, Character[] charSet){
+        SubImages subImages = subImagesOf(numCharsInRow);
+
+        return Metrics.time(Stage.MATCH, () -> {
+            CharPalette palette = new CharPalette(charSet, CHAR_RESOLUTION, fontName);
+            synchronized (subImages) {
+                char[][] charsImage = subImages.lastPalette == null ?
+                        matchAll(subImages, palette) : rematch(subImages, palette);
+                subImages.lastPalette = palette;
+                subImages.lastChars = charsImage;
+                return charsImage;
             }
-        }
+        });
+    }
 
-        //compute the brightness of all new chars, and add them to the actual chars map
-        getCharsBrightness(newChars);
-        for(Character c : newChars) {
-            actualCharsBrightnessMap.put(c, computedCharsBrightnessMap.get(c));
+    /**
+     * Computes the average color of every sub-image, for outputting the chars in color. The colors are
+     * computed once per resolution.
+     * @param numCharsInRow number of ascii chars in a row, the same as in chooseChars
+     * @return a 2D matrix with the packed RGB color of every char. the matcher keeps it, so it must not be
+     * modified
+     */
+    public int[][] chooseColors(int numCharsInRow){
+        SubImages subImages = subImagesOf(numCharsInRow);
+        synchronized (subImages) {
+            if (subImages.colors == null) {
+                subImages.colors = Metrics.time(Stage.TILE_BRIGHTNESS,
+                        () -> computeSubImagesColor(numCharsInRow));
+            }
+            return subImages.colors;
         }
     }
 
     /**
-     * Computes (and normalizes according to all results) brightness of each char in a given array of chars
-     * @param chars an array of chars to compute brightness to each
+     * @param numCharsInRow number of ascii chars in a row
+     * @return the sub-images at that resolution, computing their brightness if they aren't cached
      */
-    private void getCharsBrightness(Character[] chars){
-        for (Character c : chars) {
-            float charBrightness = computeCharBrightness(c);
+    private SubImages subImagesOf(int numCharsInRow){
+        SubImages subImages = subImagesCache.get(numCharsInRow);
+        if (subImages != null) return subImages;
+        //computed outside the cache's lock, so other resolutions aren't blocked meanwhile
+        subImages = Metrics.time(Stage.TILE_BRIGHTNESS,
+                () -> new SubImages(computeSubImagesBrightness(numCharsInRow)));
+        return subImagesCache.putIfAbsent(numCharsInRow, subImages);
+    }
 
-            maxBrightness = Math.max(maxBrightness, charBrightness);
-            minBrightness = Math.min(minBrightness, charBrightness);
+    /**
+     * Matches every sub-image with a char
+     * @param subImages the sub-images to match
+     * @param palette the chars to choose from
+     * @return the chars of the sub-images
+     */
+    private char[][] matchAll(SubImages subImages, CharPalette palette){
+        float[][] brightness = subImages.brightness;
+        char[][] charsImage = new char[brightness.length][];
+        forEachRow(charsImage.length, row -> {
+            charsImage[row] = new char[brightness[row].length];
+            for (int col = 0; col < brightness[row].length; col++) {
+                charsImage[row][col] = palette.closestChar(brightness[row][col]);
+            }
+        });
+        return charsImage;
+    }
 
-            computedCharsBrightnessMap.put(c, charBrightness);
+    /**
+     * Copies the last chars of the sub-images, and matches again only the sub-images whose brightness lies
+     * in a range where the new palette chooses a different char than the last one. The sub-images are
+     * sorted by brightness, so each range is found with a binary search.
+     * @param subImages the sub-images to match, after they were already matched once
+     * @param palette the chars to choose from
+     * @return the chars of the sub-images
+     */
+    private char[][] rematch(SubImages subImages, CharPalette palette){
+        char[][] charsImage = new char[subImages.lastChars.length][];
+        for (int row = 0; row < charsImage.length; row++) charsImage[row] = subImages.lastChars[row].clone();
+        if (charsImage.length == 0) return charsImage;
+
+        int cols = charsImage[0].length;
+        float[] ranges = palette.differingRanges(subImages.lastPalette);
+        for (int i = 0; i < ranges.length; i += 2) {
+            int first = lowerBound(subImages.sortedBrightness, ranges[i]);
+            for (int j = first; j < subImages.sortedBrightness.length &&
+                    subImages.sortedBrightness[j] <= ranges[i + 1]; j++) {
+                int index = subImages.sortedIndices[j];
+                charsImage[index / cols][index % cols] = palette.closestChar(subImages.sortedBrightness[j]);
+            }
         }
+        return charsImage;
+    }
 
-        //normalize according to min and max brightness
-        for (Character c : chars) {
-            float finalCharBrightness = (computedCharsBrightnessMap.get(c) - minBrightness) /
-                    (maxBrightness - minBrightness);
-            computedCharsBrightnessMap.put(c,finalCharBrightness);
+    /**
+     * @param sorted an ascending array
+     * @param value the value to look for
+     * @return the index of the first element that is not smaller than value
+     */
+    private static int lowerBound(float[] sorted, float value){
+        int low = 0, high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) low = middle + 1;
+            else high = middle;
         }
+        return low;
     }
 
     /**
-     * A helper function to compute the basic normalized brightness value of a char (between 0-1)
-     * @param c the char to compute
-     * @return a value between 0-1, describes the total brightness of the character
+     * Computes the brightness of every sub-image of the image at a given resolution
+     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
+     * @return the brightness of each sub-image, by row and column
      */
-    private float computeCharBrightness(char c){
-        boolean[][] charBrightnessMatrix = CharRenderer.getImg(c, CHAR_RESOLUTION, fontName);
-        float whiteCounter = 0;
-
-        for (int row = 0; row < charBrightnessMatrix.length; row++) {
-            for (int col = 0; col < charBrightnessMatrix[row].length; col++) {
-                if (charBrightnessMatrix[row][col]) ++whiteCounter;
+    private float[][] computeSubImagesBrightness(int numCharsInRow){
+        SubImageGrid grid = new SubImageGrid(image.getWidth(), image.getHeight(), numCharsInRow);
+        float[][] subImagesBrightness = new float[grid.getRows()][numCharsInRow];
+
+        //sub-images are addressed by their offset in the image, so no sub-image is allocated per char, and
+        //the image answers each brightness query without walking the sub-image's pixels
+        forEachRow(subImagesBrightness.length, row -> {
+            for (int col = 0; col < numCharsInRow; col++) {
+                subImagesBrightness[row][col] = grid.brightness(image, 0, row, col);
             }
-        }
-
-        return whiteCounter / (CHAR_RESOLUTION * CHAR_RESOLUTION);
+        });
+        return subImagesBrightness;
     }
 
     /**
-     * Computes the average brightness of a given sub-image
-     * @param image the image itself, represented by a 2D Color matrix
-     * @return the average brightness of a pixel of the sub image
+     * Computes the average color of every sub-image of the image at a given resolution
+     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
+     * @return the packed RGB color of each sub-image, by row and column
      */
-    private float computeSubImageBrightness(Image image){
-        float greySum = 0;
-
-        for (int row = 0; row < image.getHeight(); row++) {
-            for (int col = 0; col < image.getWidth(); col++) {
-                Color pixel = image.getPixel(row, col);
-                greySum += (pixel.getRed() * BALANCE_RED +
-                            pixel.getGreen() * BALANCE_GREEN +
-                            pixel.getBlue() * BALANCE_BLUE);
+    private int[][] computeSubImagesColor(int numCharsInRow){
+        SubImageGrid grid = new SubImageGrid(image.getWidth(), image.getHeight(), numCharsInRow);
+        int[][] subImagesColor = new int[grid.getRows()][numCharsInRow];
+        forEachRow(subImagesColor.length, row -> {
+            for (int col = 0; col < numCharsInRow; col++) {
+                subImagesColor[row][col] = grid.color(image, 0, row, col);
             }
-        }
-        return (greySum / (image.getHeight() * image.getWidth())) / MAX_RGB; //normalized brightness
+        });
+        return subImagesColor;
     }
 
     /**
-     * Replaces a sub image with a char, that is chosen by the closest brightness
-     * @param subImageBrightness the brightness of the sub-image to replace
-     * @return the replaced char
+     * Runs an action for every row, in parallel if the matcher is parallel (see MatcherSupport.forEachRow)
+     * @param rows the number of rows
+     * @param rowAction the action, receives the index of the row
+     * @throws CancellationException in case the calling thread was interrupted
      */
-    private char replaceSubImageWithChar(float subImageBrightness){
-        float minDifference = 1; //placeholder
-        char minChar = ' '; //placeholder
-
-        for (HashMap.Entry<Character,Float> tuple : actualCharsBrightnessMap.entrySet()) {
-            float diffUnderCheck = Math.abs(subImageBrightness - tuple.getValue());
-            if(diffUnderCheck < minDifference){
-                minDifference = diffUnderCheck;
-                minChar = tuple.getKey();
-            }
-        }
-        return minChar;
+    private void forEachRow(int rows, IntConsumer rowAction){
+        MatcherSupport.forEachRow(rows, isParallel, rowAction);
     }
 }
@@ -0,0 +1,149 @@
+package ascii_art.img_to_char;
+
+import java.util.Arrays;
+
+/**
+ * A package-private class of the package img_to_char.
+ * A set of chars compiled for matching: the chars are sorted by their normalized brightness into primitive
+ * arrays, so the closest char to a brightness is found with a binary search.
+ */
+class CharPalette {
+    private static final char EMPTY_PALETTE_CHAR = ' ';
+    //margin added around ranges of brightness, to cover rounding of the boundaries between chars
+    private static final float BOUNDARY_MARGIN = 1e-5f;
+    private final char[] chars;
+    private final float[] brightness;
+
+    /**
+     * Constructor
+     * @param charSet the chars to match with
+     * @param charResolution the size in pixels to render each char in, to compute its brightness
+     * @param fontName the font to render the chars in
+     */
+    CharPalette(Character[] charSet, int charResolution, String fontName) {
+        this(charSet, brightnessOf(charSet, charResolution, fontName));
+    }
+
+    /**
+     * Constructor of a palette of chars whose brightness is already known
+     * @param charSet the chars to match with
+     * @param rawBrightness the brightness of each char, between 0 and 1, before normalization
+     */
+    CharPalette(Character[] charSet, float[] rawBrightness) {
+        float minBrightness = 1;
+        float maxBrightness = 0;
+        long[] sortKeys = new long[charSet.length];
+        for (int i = 0; i < charSet.length; i++) {
+            maxBrightness = Math.max(maxBrightness, rawBrightness[i]);
+            minBrightness = Math.min(minBrightness, rawBrightness[i]);
+        }
+
+        //normalize according to min and max brightness. a single char (or chars that are equally bright)
+        //can't be stretched, so it is left at 0.
+        //brightness is non negative, so its float bits sort like the float itself. sorting (bits, char)
+        //pairs packed in a long orders chars by brightness, and equally bright chars by their value.
+        float range = maxBrightness - minBrightness;
+        for (int i = 0; i < charSet.length; i++) {
+            float normalized = range == 0 ? 0 : (rawBrightness[i] - minBrightness) / range;
+            sortKeys[i] = ((long) Float.floatToIntBits(normalized) << Character.SIZE) | charSet[i];
+        }
+        Arrays.sort(sortKeys);
+
+        //of equally bright chars only the smallest one can ever be chosen, so keep only it
+        int size = 0;
+        char[] sortedChars = new char[sortKeys.length];
+        float[] sortedBrightness = new float[sortKeys.length];
+        for (long key : sortKeys) {
+            float keyBrightness = Float.intBitsToFloat((int) (key >>> Character.SIZE));
+            if (size > 0 && sortedBrightness[size - 1] == keyBrightness) continue;
+            sortedChars[size] = (char) key;
+            sortedBrightness[size++] = keyBrightness;
+        }
+        chars = Arrays.copyOf(sortedChars, size);
+        brightness = Arrays.copyOf(sortedBrightness, size);
+    }
+
+    private static float[] brightnessOf(Character[] charSet, int charResolution, String fontName) {
+        float[] brightness = new float[charSet.length];
+        for (int i = 0; i < charSet.length; i++) {
+            brightness[i] = CharRenderer.getBrightness(charSet[i], charResolution, fontName);
+        }
+        return brightness;
+    }
+
+    /**
+     * Finds the char whose normalized brightness is closest to the given brightness. Ties go to the
+     * smaller char.
+     * @param subImageBrightness the brightness to match
+     * @return the closest char, or a space if the palette is empty
+     */
+    char closestChar(float subImageBrightness) {
+        if (chars.length == 0) return EMPTY_PALETTE_CHAR;
+
+        int above = Arrays.binarySearch(brightness, subImageBrightness);
+        if (above >= 0) return chars[above];
+        above = -above - 1; //the first char brighter than subImageBrightness
+        if (above == 0) return chars[0];
+        if (above == chars.length) return chars[chars.length - 1];
+
+        int below = above - 1;
+        float diffBelow = Math.abs(subImageBrightness - brightness[below]);
+        float diffAbove = Math.abs(subImageBrightness - brightness[above]);
+        if (diffBelow != diffAbove) return diffBelow < diffAbove ? chars[below] : chars[above];
+        return (char) Math.min(chars[below], chars[above]);
+    }
+
+    /**
+     * Finds the ranges of brightness in which this palette and another one choose different chars.
+     * The ranges are slightly wider than needed, so that a brightness outside of them is certain to be
+     * matched to the same char by both palettes.
+     * @param other the other palette
+     * @return the ranges, as sorted and disjoint (low, high) pairs of inclusive bounds
+     */
+    float[] differingRanges(CharPalette other) {
+        //each palette chooses the same char between two consecutive boundaries (midpoints between its
+        //chars), so both palettes are constant between consecutive boundaries of either of them
+        float[] edges = new float[brightness.length + other.brightness.length + 2];
+        int edgeCount = 0;
+        edges[edgeCount++] = Float.NEGATIVE_INFINITY;
+        edgeCount = addBoundaries(edges, edgeCount);
+        edgeCount = other.addBoundaries(edges, edgeCount);
+        edges[edgeCount++] = Float.POSITIVE_INFINITY;
+        Arrays.sort(edges, 0, edgeCount);
+
+        float[] ranges = new float[2 * (edgeCount - 1)];
+        int rangeCount = 0;
+        for (int i = 0; i + 1 < edgeCount; i++) {
+            float low = edges[i], high = edges[i + 1];
+            if (closestChar(sampleBetween(low, high)) == other.closestChar(sampleBetween(low, high))) continue;
+            if (rangeCount > 0 && ranges[rangeCount - 1] >= low - BOUNDARY_MARGIN) {
+                ranges[rangeCount - 1] = high + BOUNDARY_MARGIN; //continues the previous range
+            }
+            else {
+                ranges[rangeCount++] = low - BOUNDARY_MARGIN;
+                ranges[rangeCount++] = high + BOUNDARY_MARGIN;
+            }
+        }
+        return Arrays.copyOf(ranges, rangeCount);
+    }
+
+    /**
+     * Adds the brightness values where this palette switches from one char to the next
+     * @param edges the array to add to
+     * @param edgeCount the number of values already in the array
+     * @return the number of values in the array after the addition
+     */
+    private int addBoundaries(float[] edges, int edgeCount) {
+        for (int i = 0; i + 1 < brightness.length; i++) {
+            edges[edgeCount++] = (brightness[i] + brightness[i + 1]) / 2;
+        }
+        return edgeCount;
+    }
+
+    private static float sampleBetween(float low, float high) {
+        if (low == Float.NEGATIVE_INFINITY && high == Float.POSITIVE_INFINITY) return 0;
+        if (low == Float.NEGATIVE_INFINITY) return high - 1;
+        if (high == Float.POSITIVE_INFINITY) return low + 1;
+        return (low + high) / 2;
+    }
+}
@@ -1,7 +1,14 @@
 package ascii_art.img_to_char;
 
+import metrics.Metrics;
+import metrics.Stage;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
 
 /**
  * Inspired by, and partly copied from
@@ -10,20 +17,86 @@ import java.awt.image.BufferedImage;
  * https://dzone.com/articles/ascii-art-generator-java
  * Adaptations made by Dan Nirel.
  * The class renders (draws) characters to a binary "image" (2D array of booleans).
+ * Rendered characters are kept in a cache shared by all callers, so each character is drawn by AWT at most
+ * once per font and size. The cache can be saved to and loaded from a file between runs.
  */
 public class CharRenderer {
     private static final double X_OFFSET_FACTOR = 0.2;
     private static final double Y_OFFSET_FACTOR = 0.75;
+    private static final int CACHE_FILE_MAGIC = 0x47_4C_59_31; //"GLY1"
+    //the largest chars a cache file may hold. no matcher renders chars larger than this
+    private static final int MAX_CACHED_PIXELS = MatcherSupport.CHAR_RESOLUTION;
+    private static final String BAD_CACHE_ENTRY_ERR = "Stopped loading glyph cache \"%s\" at a bad entry";
+    //font name -> ((pixels << 16) | char) -> rendered character
+    private static final Map<String, Map<Integer, boolean[][]>> imgCache = new ConcurrentHashMap<>();
+    //same keys -> fraction of the character's pixels that are white
+    private static final Map<String, Map<Integer, Float>> brightnessCache = new ConcurrentHashMap<>();
+    //same keys -> the character's pixels packed into bits
+    private static final Map<String, Map<Integer, long[]>> maskCache = new ConcurrentHashMap<>();
+    private static volatile boolean cacheChanged = false;
 
     /**
      * Renders a given character, according to how it looks in the font specified in the
      * constructor, to a square black&white image (2D array of booleans),
      * whose dimension in pixels is specified.
+     * The returned array is shared through the cache and must not be modified.
      */
     public static boolean[][] getImg(char c, int pixels, String fontName) {
-        int key = (pixels << 8) | c;
-        return render(c, pixels, fontName);
+        int key = (pixels << 16) | c;
+        return imgCache.computeIfAbsent(fontName, font -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> {
+                    cacheChanged = true;
+                    return Metrics.time(Stage.GLYPH_RASTERIZATION, () -> render(c, pixels, fontName));
+                });
+    }
+
+    /**
+     * Computes the fraction of white pixels in a rendered character
+     * @param c the character
+     * @param pixels the dimension of the rendered square, in pixels
+     * @param fontName the font to render in
+     * @return a value between 0-1, describes the total brightness of the character
+     */
+    public static float getBrightness(char c, int pixels, String fontName) {
+        int key = (pixels << 16) | c;
+        return brightnessCache.computeIfAbsent(fontName, font -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> {
+                    float whiteCounter = 0;
+                    for (boolean[] row : getImg(c, pixels, fontName)) {
+                        for (boolean isWhite : row) {
+                            if (isWhite) ++whiteCounter;
+                        }
+                    }
+                    return whiteCounter / (pixels * pixels);
+                });
     }
+
+    /**
+     * Packs a rendered character into bits, row after row: pixel (row, col) is bit (row * pixels + col) % 64
+     * of word (row * pixels + col) / 64, and is set if the pixel is white. Comparing two masks takes a few
+     * Long.bitCount calls instead of a walk over every pixel.
+     * The returned array is shared through the cache and must not be modified.
+     * @param c the character
+     * @param pixels the dimension of the rendered square, in pixels
+     * @param fontName the font to render in
+     * @return the mask, pixels * pixels bits rounded up to whole longs
+     */
+    public static long[] getMask(char c, int pixels, String fontName) {
+        int key = (pixels << 16) | c;
+        return maskCache.computeIfAbsent(fontName, font -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> {
+                    long[] mask = new long[(pixels * pixels + Long.SIZE - 1) / Long.SIZE];
+                    boolean[][] img = getImg(c, pixels, fontName);
+                    for (int row = 0; row < pixels; row++) {
+                        for (int col = 0; col < pixels; col++) {
+                            int bit = row * pixels + col;
+                            if (img[row][col]) mask[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                        }
+                    }
+                    return mask;
+                });
+    }
+
     private static boolean[][] render(char c, int pixels, String fontName) {
         String charStr = Character.toString(c);
         Font font = new Font(fontName, Font.PLAIN, pixels);
@@ -42,6 +115,92 @@ public class CharRenderer {
         return matrix;
     }
 
+    /**
+     * Loads rendered characters saved by saveCache into the cache. A missing or unreadable file leaves
+     * the cache as it is. An entry of a size no matcher renders means the file is damaged, so it and the
+     * entries after it are skipped, and the entries before it stay loaded.
+     * @param filename the file to load from
+     */
+    public static void loadCache(String filename) {
+        File file = new File(filename);
+        if (!file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CACHE_FILE_MAGIC) return;
+            int fonts = in.readInt();
+            for (int i = 0; i < fonts; i++) {
+                Map<Integer, boolean[][]> fontCache =
+                        imgCache.computeIfAbsent(in.readUTF(), font -> new ConcurrentHashMap<>());
+                int entries = in.readInt();
+                for (int j = 0; j < entries; j++) {
+                    int key = in.readInt(), pixels = key >>> 16;
+                    //the size is checked before it is allocated, and without it the next entry can't be found
+                    if (pixels < 1 || pixels > MAX_CACHED_PIXELS) {
+                        Logger.getGlobal().warning(String.format(BAD_CACHE_ENTRY_ERR, filename));
+                        return;
+                    }
+                    fontCache.putIfAbsent(key, readImg(in, pixels));
+                }
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to load glyph cache \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Saves every rendered character to a file, if characters were rendered since the cache was
+     * last loaded or saved. Each pixel takes one bit.
+     * @param filename the file to save to
+     */
+    public static void saveCache(String filename) {
+        if (!cacheChanged) return;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(filename)))) {
+            out.writeInt(CACHE_FILE_MAGIC);
+            out.writeInt(imgCache.size());
+            for (Map.Entry<String, Map<Integer, boolean[][]>> font : imgCache.entrySet()) {
+                Map<Integer, boolean[][]> fontCache = Map.copyOf(font.getValue());
+                out.writeUTF(font.getKey());
+                out.writeInt(fontCache.size());
+                for (Map.Entry<Integer, boolean[][]> entry : fontCache.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    writeImg(out, entry.getValue());
+                }
+            }
+            cacheChanged = false;
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to save glyph cache \"%s\"", filename));
+        }
+    }
+
+    private static void writeImg(DataOutputStream out, boolean[][] img) throws IOException {
+        int bits = 0, bitCount = 0;
+        for (boolean[] row : img) {
+            for (boolean pixel : row) {
+                bits = (bits << 1) | (pixel ? 1 : 0);
+                if (++bitCount == Byte.SIZE) {
+                    out.writeByte(bits);
+                    bits = bitCount = 0;
+                }
+            }
+        }
+        if (bitCount > 0) out.writeByte(bits << (Byte.SIZE - bitCount));
+    }
+
+    private static boolean[][] readImg(DataInputStream in, int pixels) throws IOException {
+        boolean[][] img = new boolean[pixels][pixels];
+        int bits = 0, bitCount = 0;
+        for (boolean[] row : img) {
+            for (int x = 0; x < pixels; x++) {
+                if (bitCount == 0) {
+                    bits = in.readUnsignedByte();
+                    bitCount = Byte.SIZE;
+                }
+                row[x] = ((bits >> --bitCount) & 1) == 1;
+            }
+        }
+        return img;
+    }
+
     //for debugging
     public static void printBoolArr(boolean[][] arr) {
         for (boolean[] booleans : arr) {
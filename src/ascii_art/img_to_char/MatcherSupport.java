@@ -0,0 +1,38 @@
+package ascii_art.img_to_char;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A package-private class of the package ascii_art.img_to_char.
+ * What the matchers of the package share: the resolution chars are rendered in, and running an action
+ * for every row of sub-images.
+ */
+final class MatcherSupport {
+    /** The dimension, in pixels, of the square every char is rendered in */
+    static final int CHAR_RESOLUTION = 16;
+    private static final String CANCELLED_MSG = "Matching was interrupted";
+
+    private MatcherSupport() {
+    }
+
+    /**
+     * Runs an action for every row, on all available cores (using the common fork-join pool) or on the
+     * calling thread. Every row must be written only by the action of that row, so rows can be handled in
+     * any order. Once the calling thread is interrupted, the remaining rows are skipped
+     * @param rows the number of rows
+     * @param isParallel true to run the rows in parallel
+     * @param rowAction the action, receives the index of the row
+     * @throws CancellationException in case the calling thread was interrupted
+     */
+    static void forEachRow(int rows, boolean isParallel, IntConsumer rowAction) {
+        Thread caller = Thread.currentThread();
+        IntStream rowIndices = IntStream.range(0, rows);
+        if (isParallel) rowIndices = rowIndices.parallel();
+        rowIndices.forEach(row -> {
+            if (caller.isInterrupted()) throw new CancellationException(CANCELLED_MSG);
+            rowAction.accept(row);
+        });
+    }
+}
@@ -0,0 +1,261 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+import metrics.Metrics;
+import metrics.Stage;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+
+/**
+ * Replaces sub-images with the chars whose shape resembles them, rather than only their brightness, so
+ * edges and lines keep their direction even at a low resolution.
+ * Every sub-image is sampled at the resolution the chars are rendered in and thresholded at its own mean
+ * brightness into a bitmask, whose bits are white where the sub-image is brighter than its mean. The chosen
+ * char has the fewest bits that differ from its rendered mask (counted with Long.bitCount), plus a penalty
+ * for the difference in brightness, so flat areas still get chars of the right brightness. A sub-image
+ * without visible contrast has no shape, and gets the char of the closest brightness, as in
+ * BrightnessImgCharMatcher.
+ */
+public class ShapeImgCharMatcher {
+    private static final int CHAR_RESOLUTION = MatcherSupport.CHAR_RESOLUTION;
+    private static final int MASK_BITS = CHAR_RESOLUTION * CHAR_RESOLUTION;
+    private static final int MASK_WORDS = (MASK_BITS + Long.SIZE - 1) / Long.SIZE;
+    //a sub-image whose darkest and brightest samples are closer than this has no shape to match
+    private static final float MIN_CONTRAST = 0.15f;
+    //the penalty, in differing bits, of a char that is as far as possible from the sub-image's brightness
+    private static final float BRIGHTNESS_WEIGHT = MASK_BITS / 2f;
+    //mask, brightness and shape flag of a sub-image
+    private static final int BYTES_PER_SUB_IMAGE = MASK_WORDS * Long.BYTES + Float.BYTES + 1;
+    private final Image image;
+    private final String fontName;
+    private volatile boolean isParallel = false;
+    //number of chars in a row -> the masks of the sub-images at that resolution. the masks don't depend
+    //on the chars, so changing only the chars skips the pixels entirely
+    private final SizedCache<Integer, SubImageMasks> masksCache;
+
+    /**
+     * The masks and brightness of the sub-images of the image at one resolution
+     */
+    private static class SubImageMasks {
+        private final int rows;
+        private final int cols;
+        private final long[] masks; //MASK_WORDS per sub-image, row after row
+        private final float[] brightness;
+        private final boolean[] hasShape;
+        private final long bytes;
+
+        private SubImageMasks(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            masks = new long[rows * cols * MASK_WORDS];
+            brightness = new float[rows * cols];
+            hasShape = new boolean[rows * cols];
+            bytes = (long) rows * cols * BYTES_PER_SUB_IMAGE;
+        }
+    }
+
+    /**
+     * The chars to match with, with their masks and normalized brightness
+     */
+    private static class Glyphs {
+        private final char[] chars;
+        private final long[] masks; //MASK_WORDS per char
+        private final float[] brightness; //normalized like CharPalette does
+        private final CharPalette palette; //for sub-images without a shape
+
+        private Glyphs(Character[] charSet, String fontName) {
+            //distinct chars in ascending order, so ties go to the smaller char
+            char[] sortedChars = new char[charSet.length];
+            for (int i = 0; i < charSet.length; i++) sortedChars[i] = charSet[i];
+            Arrays.sort(sortedChars);
+            int size = 0;
+            for (char c : sortedChars) {
+                if (size == 0 || sortedChars[size - 1] != c) sortedChars[size++] = c;
+            }
+            chars = Arrays.copyOf(sortedChars, size);
+
+            masks = new long[size * MASK_WORDS];
+            brightness = new float[size];
+            float minBrightness = 1, maxBrightness = 0;
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(CharRenderer.getMask(chars[i], CHAR_RESOLUTION, fontName), 0,
+                        masks, i * MASK_WORDS, MASK_WORDS);
+                brightness[i] = CharRenderer.getBrightness(chars[i], CHAR_RESOLUTION, fontName);
+                minBrightness = Math.min(minBrightness, brightness[i]);
+                maxBrightness = Math.max(maxBrightness, brightness[i]);
+            }
+            float range = maxBrightness - minBrightness;
+            for (int i = 0; i < size; i++) {
+                brightness[i] = range == 0 ? 0 : (brightness[i] - minBrightness) / range;
+            }
+            palette = new CharPalette(charSet, CHAR_RESOLUTION, fontName);
+        }
+
+        private int size() {
+            return brightness.length;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param image the given image to transform into ascii
+     * @param font the font in which to present the ascii
+     */
+    public ShapeImgCharMatcher(Image image, String font){
+        this(image, font, BrightnessImgCharMatcher.DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Constructor
+     * @param image the given image to transform into ascii
+     * @param font the font in which to present the ascii
+     * @param cacheBytes the maximal number of bytes the masks of all resolutions may take. the least
+     *                   recently used resolutions are computed again once they don't fit
+     */
+    public ShapeImgCharMatcher(Image image, String font, long cacheBytes){
+        this.image = image;
+        this.fontName = font;
+        this.masksCache = new SizedCache<>(cacheBytes, masks -> masks.bytes);
+    }
+
+    /**
+     * Sets whether chooseChars matches the rows of the image on all available cores (using the common
+     * fork-join pool) or on the calling thread. Both modes return exactly the same chars.
+     * @param isParallel true to match rows in parallel
+     */
+    public void setParallel(boolean isParallel){
+        this.isParallel = isParallel;
+    }
+
+    /**
+     * A function that replaces amount of pixels with ascii chars, by shape
+     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
+     * @param charSet all the characters available to transform into
+     * @return a 2D matrix with the ascii chars
+     * @throws CancellationException in case the calling thread is interrupted while matching
+     */
+    public char[][] chooseChars(int numCharsInRow, Character[] charSet){
+        SubImageMasks subImages = masksOf(numCharsInRow);
+
+        return Metrics.time(Stage.MATCH, () -> {
+            Glyphs glyphs = new Glyphs(charSet, fontName);
+            char[][] charsImage = new char[subImages.rows][subImages.cols];
+            forEachRow(subImages.rows, row -> {
+                for (int col = 0; col < subImages.cols; col++) {
+                    charsImage[row][col] = closestChar(subImages, row * subImages.cols + col, glyphs);
+                }
+            });
+            return charsImage;
+        });
+    }
+
+    /**
+     * @param numCharsInRow number of ascii chars in a row
+     * @return the masks of the sub-images at that resolution, computing them if they aren't cached
+     */
+    private SubImageMasks masksOf(int numCharsInRow){
+        SubImageMasks masks = masksCache.get(numCharsInRow);
+        if (masks != null) return masks;
+        //computed outside the cache's lock, so other resolutions aren't blocked meanwhile
+        masks = Metrics.time(Stage.TILE_BRIGHTNESS, () -> computeMasks(numCharsInRow));
+        return masksCache.putIfAbsent(numCharsInRow, masks);
+    }
+
+    /**
+     * Finds the char whose mask and brightness are closest to a sub-image. Ties go to the smaller char.
+     * @param subImages the sub-images
+     * @param index the index of the sub-image, row * number of chars in row + column
+     * @param glyphs the chars to choose from
+     * @return the closest char, or a space if there are no chars
+     */
+    private static char closestChar(SubImageMasks subImages, int index, Glyphs glyphs){
+        float subImageBrightness = subImages.brightness[index];
+        if (!subImages.hasShape[index] || glyphs.size() == 0) {
+            return glyphs.palette.closestChar(subImageBrightness);
+        }
+
+        int maskOffset = index * MASK_WORDS;
+        float bestDistance = Float.MAX_VALUE;
+        char best = ' ';
+        for (int i = 0; i < glyphs.size(); i++) {
+            int differingBits = 0;
+            for (int word = 0; word < MASK_WORDS; word++) {
+                differingBits += Long.bitCount(
+                        subImages.masks[maskOffset + word] ^ glyphs.masks[i * MASK_WORDS + word]);
+            }
+            float distance = differingBits +
+                    BRIGHTNESS_WEIGHT * Math.abs(subImageBrightness - glyphs.brightness[i]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = glyphs.chars[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the mask and brightness of every sub-image of the image at a given resolution
+     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
+     * @return the masks of the sub-images
+     */
+    private SubImageMasks computeMasks(int numCharsInRow){
+        SubImageGrid grid = new SubImageGrid(image.getWidth(), image.getHeight(), numCharsInRow);
+        SubImageMasks subImages = new SubImageMasks(grid.getRows(), numCharsInRow);
+        forEachRow(subImages.rows, row -> {
+            float[] samples = new float[MASK_BITS]; //reused for every sub-image of the row
+            for (int col = 0; col < numCharsInRow; col++) {
+                int index = row * numCharsInRow + col;
+                subImages.brightness[index] = grid.brightness(image, 0, row, col);
+                subImages.hasShape[index] = sample(grid, row, col, samples);
+                if (!subImages.hasShape[index]) continue;
+                for (int bit = 0; bit < MASK_BITS; bit++) {
+                    if (samples[bit] > subImages.brightness[index]) {
+                        subImages.masks[index * MASK_WORDS + bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                    }
+                }
+            }
+        });
+        return subImages;
+    }
+
+    /**
+     * Samples a sub-image at the resolution of the chars: each sample is the average brightness of its
+     * cell of the sub-image. A sub-image smaller than the chars repeats its pixels over several cells.
+     * @param grid the grid of the sub-images
+     * @param row the row of the sub-image
+     * @param col the column of the sub-image
+     * @param samples receives the brightness of the cells, row after row
+     * @return true if the sub-image has enough contrast to have a shape
+     */
+    private boolean sample(SubImageGrid grid, int row, int col, float[] samples){
+        int upperRow = grid.rowStart(row), height = grid.rowStart(row + 1) - upperRow;
+        int leftCol = grid.colStart(col), width = grid.colStart(col + 1) - leftCol;
+        float min = 1, max = 0;
+        for (int cellRow = 0; cellRow < CHAR_RESOLUTION; cellRow++) {
+            int top = cellRow * height / CHAR_RESOLUTION;
+            int bottom = Math.max((cellRow + 1) * height / CHAR_RESOLUTION, top + 1);
+            for (int cellCol = 0; cellCol < CHAR_RESOLUTION; cellCol++) {
+                int left = cellCol * width / CHAR_RESOLUTION;
+                int right = Math.max((cellCol + 1) * width / CHAR_RESOLUTION, left + 1);
+                float brightness = image.getSubImageBrightness(upperRow + top, leftCol + left,
+                        bottom - top, right - left);
+                samples[cellRow * CHAR_RESOLUTION + cellCol] = brightness;
+                min = Math.min(min, brightness);
+                max = Math.max(max, brightness);
+            }
+        }
+        return max - min >= MIN_CONTRAST;
+    }
+
+    /**
+     * Runs an action for every row, in parallel if the matcher is parallel (see MatcherSupport.forEachRow)
+     * @param rows the number of rows
+     * @param rowAction the action, receives the index of the row
+     * @throws CancellationException in case the calling thread was interrupted
+     */
+    private void forEachRow(int rows, IntConsumer rowAction){
+        MatcherSupport.forEachRow(rows, isParallel, rowAction);
+    }
+}
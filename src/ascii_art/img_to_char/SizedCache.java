@@ -0,0 +1,62 @@
+package ascii_art.img_to_char;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * A package-private class of the package ascii_art.img_to_char.
+ * A least-recently-used cache bounded by the memory its values take, like the render cache of the shell.
+ * Values are computed by the caller outside the cache's lock, so a slow computation doesn't block other
+ * keys. Two threads that miss the same key at once both compute it, and the first one to put it wins.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+class SizedCache<K, V> {
+    private final long byteBudget;
+    private final ToLongFunction<V> sizeOf;
+    private final LinkedHashMap<K, V> values = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesUsed = 0;
+
+    /**
+     * Constructor
+     * @param byteBudget the maximal number of bytes the cached values may take
+     * @param sizeOf estimates the bytes a value takes. must give the same size every time it is called
+     */
+    SizedCache(long byteBudget, ToLongFunction<V> sizeOf) {
+        this.byteBudget = byteBudget;
+        this.sizeOf = sizeOf;
+    }
+
+    /**
+     * @param key the key of the value
+     * @return the cached value, or null if it isn't cached
+     */
+    synchronized V get(K key) {
+        return values.get(key);
+    }
+
+    /**
+     * Caches a value unless the key already has one, evicting the least recently used values if the
+     * budget is exceeded. A value that is larger than the whole budget isn't cached.
+     * @param key the key of the value
+     * @param value the value
+     * @return the value that was already cached for the key, or else the given value
+     */
+    synchronized V putIfAbsent(K key, V value) {
+        V cached = values.get(key);
+        if (cached != null) return cached;
+        long size = sizeOf.applyAsLong(value);
+        if (size > byteBudget) return value;
+        values.put(key, value);
+        bytesUsed += size;
+
+        Iterator<Map.Entry<K, V>> eldest = values.entrySet().iterator();
+        while (bytesUsed > byteBudget) {
+            bytesUsed -= sizeOf.applyAsLong(eldest.next().getValue());
+            eldest.remove();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,80 @@
+package ascii_art.img_to_char;
+
+import ascii_output.AsciiOutput;
+import image.Image;
+import image.ImageBandReader;
+import metrics.Metrics;
+import metrics.Span;
+import metrics.Stage;
+
+import java.io.IOException;
+
+/**
+ * Translates an image file to chars while reading it, one band of rows at a time from top to bottom, so the
+ * whole image never has to be in memory. Produces exactly the chars BrightnessImgCharMatcher produces for
+ * the same file.
+ */
+public class StreamingImgCharMatcher {
+    private static final int CHAR_RESOLUTION = MatcherSupport.CHAR_RESOLUTION;
+    private static final int MAX_BAND_PIXELS = 1 << 24; //64MB of ARGB pixels per band
+    private final String fontName;
+
+    /**
+     * Constructor
+     * @param font the font in which to present the ascii
+     */
+    public StreamingImgCharMatcher(String font){
+        this.fontName = font;
+    }
+
+    /**
+     * Replaces the pixels of an image file with ascii chars, writing each row of chars to the output as
+     * soon as its band of the image was read
+     * @param reader a reader of the image file to transform into ascii
+     * @param numCharsInRow number of ascii chars in a row, helps determine resolution and pixels per char
+     * @param charSet all the characters available to transform into
+     * @param output receives the rows of chars, from top to bottom
+     * @throws IOException in case reading the image fails
+     */
+    public void chooseChars(ImageBandReader reader, int numCharsInRow, Character[] charSet,
+                            AsciiOutput output) throws IOException {
+        SubImageGrid grid = new SubImageGrid(reader.getWidth(), reader.getHeight(), numCharsInRow);
+        int rows = grid.getRows();
+        //as many rows of sub-images as fit in the band budget, but at least one
+        int rowsPerBand = (int) Math.max(1, MAX_BAND_PIXELS /
+                ((long) reader.getWidth() * (grid.rowStart(1) + 1)));
+        //reading, matching and writing take turns, so each stage is measured only while it runs
+        Span matchSpan = Metrics.start(Stage.MATCH);
+        CharPalette palette = new CharPalette(charSet, CHAR_RESOLUTION, fontName);
+        matchSpan.pause();
+        Span outputSpan = Metrics.paused(Stage.OUTPUT);
+
+        char[] rowChars = new char[numCharsInRow]; //the output doesn't keep rows, so one array will do
+
+        outputSpan.resume();
+        output.begin(numCharsInRow);
+        outputSpan.pause();
+        try {
+            for (int bandRow = 0; bandRow < rows; bandRow += rowsPerBand) {
+                int bandRows = Math.min(rowsPerBand, rows - bandRow);
+                int bandTop = grid.rowStart(bandRow);
+                Image band = reader.readBand(bandTop, grid.rowStart(bandRow + bandRows) - bandTop);
+                for (int row = bandRow; row < bandRow + bandRows; row++) {
+                    matchSpan.resume();
+                    for (int col = 0; col < numCharsInRow; col++) {
+                        rowChars[col] = palette.closestChar(grid.brightness(band, bandTop, row, col));
+                    }
+                    matchSpan.pause();
+                    outputSpan.resume();
+                    output.writeRow(rowChars);
+                    outputSpan.pause();
+                }
+            }
+        } finally {
+            matchSpan.close();
+            outputSpan.resume();
+            output.end();
+            outputSpan.close();
+        }
+    }
+}
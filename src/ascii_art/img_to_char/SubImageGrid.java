@@ -0,0 +1,87 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+
+/**
+ * A package-private class of the package img_to_char.
+ * Splits an image of any size into rows and columns of sub-images, one per char. The sub-images are as
+ * close to square as the image allows: every column is width / numCharsInRow pixels wide (rounded down or
+ * up, so the columns cover the whole width), and the rows are spread the same way over the height.
+ */
+class SubImageGrid {
+    private final int width;
+    private final int height;
+    private final int rows;
+    private final int cols;
+
+    /**
+     * Constructor
+     * @param width width of the image
+     * @param height height of the image
+     * @param numCharsInRow number of ascii chars in a row
+     */
+    SubImageGrid(int width, int height, int numCharsInRow) {
+        this.width = width;
+        this.height = height;
+        this.cols = numCharsInRow;
+        this.rows = (int) Math.max(1, Math.round((double) height * numCharsInRow / width));
+    }
+
+    /**
+     * @return number of rows of sub-images
+     */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return number of columns of sub-images
+     */
+    int getCols() {
+        return cols;
+    }
+
+    /**
+     * @param row a row of sub-images, or the number of rows for the end of the image
+     * @return the first pixel row of the row of sub-images
+     */
+    int rowStart(int row) {
+        return (int) ((long) row * height / rows);
+    }
+
+    /**
+     * @param col a column of sub-images, or the number of columns for the end of the image
+     * @return the first pixel column of the column of sub-images
+     */
+    int colStart(int col) {
+        return (int) ((long) col * width / cols);
+    }
+
+    /**
+     * Computes the average brightness of a sub-image
+     * @param image the image, or a band of it
+     * @param imageUpperRow the pixel row of the whole image where the given image starts
+     * @param row the row of the sub-image
+     * @param col the column of the sub-image
+     * @return the average brightness of a pixel of the sub-image
+     */
+    float brightness(Image image, int imageUpperRow, int row, int col) {
+        int upperRow = rowStart(row), leftCol = colStart(col);
+        return image.getSubImageBrightness(upperRow - imageUpperRow, leftCol,
+                rowStart(row + 1) - upperRow, colStart(col + 1) - leftCol);
+    }
+
+    /**
+     * Computes the average color of a sub-image
+     * @param image the image, or a band of it
+     * @param imageUpperRow the pixel row of the whole image where the given image starts
+     * @param row the row of the sub-image
+     * @param col the column of the sub-image
+     * @return the packed RGB value of the average color of a pixel of the sub-image
+     */
+    int color(Image image, int imageUpperRow, int row, int col) {
+        int upperRow = rowStart(row), leftCol = colStart(col);
+        return image.getSubImageColor(upperRow - imageUpperRow, leftCol,
+                rowStart(row + 1) - upperRow, colStart(col + 1) - leftCol);
+    }
+}
@@ -1,13 +1,90 @@
 package ascii_output;
 
+import metrics.Metrics;
+import metrics.Stage;
+
+import java.util.List;
+
 /**
  * An object implementing this interface can output a 2D array of chars
  * in some fashion.
+ * The chars can also be output row by row as they are produced: call begin once, then writeRow for each
+ * row from top to bottom, then end.
  * @author Dan Nirel
  */
 public interface AsciiOutput {
+    /** the formats of files toFile can write, which are also the extensions of the files */
+    List<String> FILE_FORMATS = List.of("html", "txt", "html.gz", "txt.gz", "bin", "bin.gz");
+
+    /**
+     * Creates an output that writes to a file in a given format
+     * @param format one of FILE_FORMATS
+     * @param filename the file to write to
+     * @param fontName the font in which to present the ascii, for HTML
+     * @return the output, or null if the format is unknown
+     */
+    static AsciiOutput toFile(String format, String filename, String fontName) {
+        switch (format) {
+            case "html": return new HtmlAsciiOutput(filename, fontName);
+            case "txt": return new TextAsciiOutput(filename);
+            case "html.gz": return new HtmlAsciiOutput(filename, fontName, true);
+            case "txt.gz": return new TextAsciiOutput(filename, true);
+            case "bin": return new BinaryAsciiOutput(filename);
+            case "bin.gz": return new BinaryAsciiOutput(filename, true);
+            default: return null;
+        }
+    }
+    /**
+     * Starts outputting an image
+     * @param charsInRow the number of chars in every row of the image
+     */
+    void begin(int charsInRow);
+
+    /**
+     * Outputs the next row of the image. The row is not kept after the call returns, so the caller may
+     * reuse the array for the next row.
+     * @param row the chars of the row
+     */
+    void writeRow(char[] row);
+
+    /**
+     * Outputs the next row of the image in color. An output that has no colors outputs only the chars.
+     * Neither array is kept after the call returns.
+     * @param row the chars of the row
+     * @param colors the packed RGB color of every char of the row
+     */
+    default void writeRow(char[] row, int[] colors) {
+        writeRow(row);
+    }
+
+    /**
+     * Finishes outputting the image, after its last row was written
+     */
+    void end();
+
+    /**
+     * Output the specified 2D array of chars. The time it takes is recorded as the output stage.
+     */
+    default void output(char[][] chars) {
+        output(chars, null);
+    }
+
     /**
-     * Output the specified 2D array of chars
+     * Output the specified 2D array of chars in color. The time it takes is recorded as the output stage.
+     * @param chars the chars
+     * @param colors the packed RGB color of every char, or null to output the chars without colors
      */
-    void output(char[][] chars);
+    default void output(char[][] chars, int[][] colors) {
+        Metrics.time(Stage.OUTPUT, () -> {
+            begin(chars.length == 0 ? 0 : chars[0].length);
+            try {
+                for (int row = 0; row < chars.length; row++) {
+                    if (colors == null) writeRow(chars[row]);
+                    else writeRow(chars[row], colors[row]);
+                }
+            } finally {
+                end();
+            }
+        });
+    }
 }
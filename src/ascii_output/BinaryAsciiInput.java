@@ -0,0 +1,92 @@
+package ascii_output;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads back a file written by BinaryAsciiOutput.
+ */
+public class BinaryAsciiInput {
+    private static final String GZIP_EXTENSION = ".gz";
+    private final char[][] chars;
+    private final int[][] colors;
+
+    /**
+     * Constructor
+     * @param filename a file written by BinaryAsciiOutput. a file whose name ends with .gz is decompressed
+     * @throws IOException in case the file can't be read or wasn't written by BinaryAsciiOutput
+     */
+    public BinaryAsciiInput(String filename) throws IOException {
+        this(openFile(filename));
+    }
+
+    /**
+     * Constructor
+     * @param in the bytes written by BinaryAsciiOutput. read to the end of the image and closed
+     * @throws IOException in case the stream can't be read or wasn't written by BinaryAsciiOutput
+     */
+    public BinaryAsciiInput(InputStream in) throws IOException {
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if(data.readInt() != BinaryAsciiOutput.FILE_MAGIC) {
+                throw new IOException("Not a binary ascii image");
+            }
+            int charsInRow = data.readInt(), rows = data.readInt();
+            boolean isColored = (data.readByte() & BinaryAsciiOutput.COLORED_FLAG) != 0;
+            char[] table = new char[data.readUnsignedShort()];
+            for (int i = 0; i < table.length; i++) table[i] = data.readChar();
+            int bitsPerIndex = data.readUnsignedByte();
+            if(charsInRow < 0 || rows < 0 || bitsPerIndex != BinaryAsciiOutput.bitsPerIndex(table.length)) {
+                throw new IOException("Corrupt binary ascii image");
+            }
+
+            chars = new char[rows][charsInRow];
+            long bits = 0; //pending bits, the oldest first
+            int bitCount = 0, mask = (1 << bitsPerIndex) - 1;
+            for (char[] row : chars) {
+                for (int col = 0; col < charsInRow; col++) {
+                    while (bitCount < bitsPerIndex) {
+                        bits = (bits << Byte.SIZE) | data.readUnsignedByte();
+                        bitCount += Byte.SIZE;
+                    }
+                    bitCount -= bitsPerIndex;
+                    int index = (int) (bits >>> bitCount) & mask;
+                    if(index >= table.length) throw new IOException("Corrupt binary ascii image");
+                    row[col] = table[index];
+                }
+            }
+
+            colors = isColored ? new int[rows][charsInRow] : null;
+            if(isColored) {
+                for (int[] row : colors) {
+                    for (int col = 0; col < charsInRow; col++) {
+                        row[col] = data.readUnsignedByte() << 16 | data.readUnsignedByte() << 8 |
+                                data.readUnsignedByte();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the chars of the image, by row and column
+     */
+    public char[][] getChars() {
+        return chars;
+    }
+
+    /**
+     * @return the packed RGB color of every char, by row and column, or null if the image has no colors
+     */
+    public int[][] getColors() {
+        return colors;
+    }
+
+    private static InputStream openFile(String filename) throws IOException {
+        InputStream file = new FileInputStream(filename);
+        return filename.endsWith(GZIP_EXTENSION) ? new GZIPInputStream(file) : file;
+    }
+}
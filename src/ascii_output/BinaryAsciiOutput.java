@@ -0,0 +1,166 @@
+package ascii_output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to a compact binary file, which BinaryAsciiInput reads back.
+ * A render uses only the few chars of its charset, so the file holds a table of the distinct chars and then
+ * the index of every char in the table, packed into as few bits as the table needs - 4 bits per char for
+ * the 10 digits, 7 for all printable ascii chars. Colored rows also store 3 bytes of RGB per char.
+ * The table is complete only after the last row, so the rows are kept, as indices, until the end.
+ * Format (big-endian): magic "ASB1", chars in row, rows, flags (1 = colored), table size, the table's
+ * chars, bits per index, the packed indices row after row, then the colors if colored.
+ */
+public class BinaryAsciiOutput implements AsciiOutput {
+    static final int FILE_MAGIC = 0x41_53_42_31; //"ASB1"
+    static final int COLORED_FLAG = 1;
+    private static final int NO_INDEX = -1;
+
+    private final String filename; //null when writing to a given stream
+    private final boolean isCompressed;
+    private final OutputStream target;
+    private int charsInRow;
+    private int rows;
+    private boolean isColored;
+    private char[] indices = new char[0]; //the table index of every char written so far
+    private int[] colors = new int[0]; //the color of every char written so far, if colored
+    private int[] tableIndexOf; //char -> its index in the table, or NO_INDEX
+    private char[] table;
+    private int tableSize;
+
+    /**
+     * Constructor
+     * @param filename the file to write to
+     */
+    public BinaryAsciiOutput(String filename) {
+        this(filename, false);
+    }
+
+    /**
+     * Constructor
+     * @param filename the file to write to
+     * @param isCompressed whether to gzip the file as it is written. the filename should then end with .gz
+     */
+    public BinaryAsciiOutput(String filename, boolean isCompressed) {
+        this.filename = filename;
+        this.isCompressed = isCompressed;
+        this.target = null;
+    }
+
+    /**
+     * Constructor of an output that writes to a stream, such as the body of an HTTP response, instead of
+     * to a file. The stream is closed when the image ends.
+     * @param target the stream to write to
+     */
+    public BinaryAsciiOutput(OutputStream target) {
+        this.filename = null;
+        this.isCompressed = false;
+        this.target = target;
+    }
+
+    @Override
+    public void begin(int charsInRow) {
+        this.charsInRow = charsInRow;
+        rows = 0;
+        isColored = false;
+        tableIndexOf = new int[Character.MAX_VALUE + 1];
+        Arrays.fill(tableIndexOf, NO_INDEX);
+        table = new char[0];
+        tableSize = 0;
+    }
+
+    @Override
+    public void writeRow(char[] row) {
+        int offset = addRow(row);
+        if(isColored) Arrays.fill(colors, offset, offset + charsInRow, 0); //black, like monochrome output
+    }
+
+    @Override
+    public void writeRow(char[] row, int[] rowColors) {
+        if(!isColored) {
+            isColored = true;
+            colors = new int[indices.length]; //the rows before had no color, so they stay black
+        }
+        int offset = addRow(row);
+        System.arraycopy(rowColors, 0, colors, offset, charsInRow);
+    }
+
+    @Override
+    public void end() {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                target == null ? OutputFiles.openStream(filename, isCompressed) : target))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(charsInRow);
+            out.writeInt(rows);
+            out.writeByte(isColored ? COLORED_FLAG : 0);
+            out.writeShort(tableSize);
+            for (int i = 0; i < tableSize; i++) out.writeChar(table[i]);
+            int bitsPerIndex = bitsPerIndex(tableSize);
+            out.writeByte(bitsPerIndex);
+
+            long bits = 0; //pending bits, the oldest first
+            int bitCount = 0;
+            for (int i = 0; i < rows * charsInRow; i++) {
+                bits = (bits << bitsPerIndex) | indices[i];
+                bitCount += bitsPerIndex;
+                while (bitCount >= Byte.SIZE) {
+                    bitCount -= Byte.SIZE;
+                    out.writeByte((int) (bits >>> bitCount));
+                }
+            }
+            if(bitCount > 0) out.writeByte((int) (bits << (Byte.SIZE - bitCount))); //padded with zeros
+
+            if(isColored) {
+                for (int i = 0; i < rows * charsInRow; i++) {
+                    out.writeByte(colors[i] >> 16);
+                    out.writeByte(colors[i] >> 8);
+                    out.writeByte(colors[i]);
+                }
+            }
+        } catch(IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"",
+                    filename == null ? target : filename));
+        }
+        indices = new char[0];
+        colors = new int[0];
+        tableIndexOf = null;
+    }
+
+    /**
+     * Adds the table indices of a row's chars, adding chars that weren't seen before to the table
+     * @param row the chars of the row
+     * @return the offset of the row's first char among all chars written
+     */
+    private int addRow(char[] row) {
+        int offset = rows * charsInRow;
+        if(indices.length < offset + charsInRow) {
+            int capacity = Math.max(2 * indices.length, offset + charsInRow);
+            indices = Arrays.copyOf(indices, capacity);
+            if(isColored) colors = Arrays.copyOf(colors, capacity);
+        }
+        for (int i = 0; i < charsInRow; i++) {
+            char c = row[i];
+            if(tableIndexOf[c] == NO_INDEX) {
+                if(table.length == tableSize) table = Arrays.copyOf(table, Math.max(2 * tableSize, 16));
+                table[tableSize] = c;
+                tableIndexOf[c] = tableSize++;
+            }
+            indices[offset + i] = (char) tableIndexOf[c];
+        }
+        rows++;
+        return offset;
+    }
+
+    /**
+     * @param tableSize the number of distinct chars
+     * @return the number of bits that can tell the chars apart, at least 1
+     */
+    static int bitsPerIndex(int tableSize) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(tableSize - 1));
+    }
+}
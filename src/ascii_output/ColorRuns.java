@@ -0,0 +1,69 @@
+package ascii_output;
+
+/**
+ * A package-private class of the package ascii_output.
+ * Decides which colored chars share a run, so an output changes color only where the color visibly changes.
+ * A run keeps the color of its first char, and a char joins the run while each of its channels is within
+ * a threshold of the run's channel. Whitespace has no visible color, so it never starts a run.
+ */
+class ColorRuns {
+    /** the default largest difference of a channel within a run, out of 255 */
+    static final int DEFAULT_THRESHOLD = 24;
+    private static final int NO_RUN = -1;
+    private static final int CHANNEL_MASK = 0xFF;
+    private static final int RGB_MASK = 0xFF_FF_FF;
+
+    private final int threshold;
+    private int runColor = NO_RUN;
+
+    /**
+     * Constructor
+     * @param threshold the largest difference of a channel within a run. 0 merges only equal colors
+     */
+    ColorRuns(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Decides whether a char starts a new run
+     * @param c the char
+     * @param rgb the packed RGB color of the char
+     * @return true if the char starts a new run, whose color is then getColor()
+     */
+    boolean startsRun(char c, int rgb) {
+        rgb &= RGB_MASK;
+        if (Character.isWhitespace(c) || (runColor != NO_RUN && isSimilar(rgb, runColor))) return false;
+        runColor = rgb;
+        return true;
+    }
+
+    /**
+     * @return true if a run was started since the last reset
+     */
+    boolean isInRun() {
+        return runColor != NO_RUN;
+    }
+
+    /**
+     * @return the packed RGB color of the current run
+     */
+    int getColor() {
+        return runColor;
+    }
+
+    /**
+     * Ends the current run, so the next char starts a new one
+     */
+    void reset() {
+        runColor = NO_RUN;
+    }
+
+    private boolean isSimilar(int rgb, int other) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            if (Math.abs(((rgb >> shift) & CHANNEL_MASK) - ((other >> shift) & CHANNEL_MASK)) > threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
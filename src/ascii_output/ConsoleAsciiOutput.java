@@ -1,16 +1,120 @@
 package ascii_output;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.logging.Logger;
+
 /**
  * Output a 2D array of chars to the console.
+ * Each row is built in a reused buffer and the image is flushed to the console once, after its last row.
+ * The chars are written straight to the standard output's file descriptor, since System.out flushes on
+ * every write and would turn each buffer of chars into its own system call.
+ * Colored rows use ANSI 24-bit color escape sequences, one per run of similar colors, so they need a
+ * terminal that supports truecolor.
  * @author Dan Nirel
  */public class ConsoleAsciiOutput implements AsciiOutput{
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+    private static final char CHAR_SEPARATOR = ' ';
+    private static final String SET_COLOR = "\u001b[38;2;";
+    private static final String RESET_COLOR = "\u001b[0m";
+    private static final int CHANNEL_MASK = 0xFF;
+
+    private final boolean isSeparated;
+    private BufferedWriter writer;
+    private char[] rowBuffer = new char[0]; //the row with its separators, reused for every row
+    private final StringBuilder colorRow = new StringBuilder(); //the colored row, reused for every row
+    private ColorRuns colorRuns = new ColorRuns(ColorRuns.DEFAULT_THRESHOLD);
+
+    /**
+     * Constructor. Every char is followed by a space, to make the image about as wide as it is tall.
+     */
+    public ConsoleAsciiOutput() {
+        this(true);
+    }
+
+    /**
+     * Constructor
+     * @param isSeparated whether every char is followed by a space
+     */
+    public ConsoleAsciiOutput(boolean isSeparated) {
+        this.isSeparated = isSeparated;
+    }
+
+    /**
+     * Sets how different the colors of neighbouring chars may be and still share an escape sequence
+     * @param colorThreshold the largest difference of a red, green or blue value within a run, out of 255.
+     *                       0 merges only equal colors
+     */
+    public void setColorThreshold(int colorThreshold) {
+        colorRuns = new ColorRuns(colorThreshold);
+    }
+
+    @Override
+    public void begin(int charsInRow) {
+        System.out.flush(); //so whatever was printed before the image stays before it
+        writer = new BufferedWriter(new OutputStreamWriter(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE)), OUTPUT_BUFFER_SIZE);
+    }
+
     @Override
-    public void output(char[][] chars) {
-        for (int y = 0; y < chars.length ; y++) {
-            for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+    public void writeRow(char[] row) {
+        int rowLength = isSeparated ? row.length * 2 : row.length;
+        if(rowBuffer.length < rowLength) rowBuffer = new char[rowLength];
+
+        int length = 0;
+        for (char c : row) {
+            rowBuffer[length++] = c;
+            if(isSeparated) rowBuffer[length++] = CHAR_SEPARATOR;
+        }
+
+        try {
+            writer.write(rowBuffer, 0, length);
+            writer.newLine();
+        } catch (IOException e) {
+            Logger.getGlobal().severe("Failed to write to the console");
+        }
+    }
+
+    /**
+     * Outputs the next row in color. The color is reset at the end of every row, so the terminal is left
+     * as it was even if the output stops early.
+     * @param row the chars of the row
+     * @param colors the packed RGB color of every char of the row
+     */
+    @Override
+    public void writeRow(char[] row, int[] colors) {
+        colorRow.setLength(0);
+        colorRuns.reset();
+        for (int i = 0; i < row.length; i++) {
+            if(colorRuns.startsRun(row[i], colors[i])) {
+                int rgb = colorRuns.getColor();
+                colorRow.append(SET_COLOR).append((rgb >> 16) & CHANNEL_MASK).append(';')
+                        .append((rgb >> 8) & CHANNEL_MASK).append(';').append(rgb & CHANNEL_MASK).append('m');
             }
-            System.out.println();
+            colorRow.append(row[i]);
+            if(isSeparated) colorRow.append(CHAR_SEPARATOR);
+        }
+        if(colorRuns.isInRun()) colorRow.append(RESET_COLOR);
+
+        try {
+            writer.append(colorRow);
+            writer.newLine();
+        } catch (IOException e) {
+            Logger.getGlobal().severe("Failed to write to the console");
+        }
+    }
+
+    @Override
+    public void end() {
+        try {
+            writer.flush(); //the standard output must stay open, so the writer is only flushed
+        } catch (IOException e) {
+            Logger.getGlobal().severe("Failed to write to the console");
         }
+        writer = null;
     }
 }
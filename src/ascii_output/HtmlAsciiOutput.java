@@ -1,32 +1,85 @@
 package ascii_output;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.logging.Logger;
 
 /**
  * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * Colored rows are written with one span per run of similar colors rather than one per char, which keeps
+ * colored pages a small multiple of the size of plain ones.
  * @author Dan Nirel
  */
 public class HtmlAsciiOutput implements AsciiOutput {
     private static final double BASE_LINE_SPACING = 0.8;
     private static final double BASE_FONT_SIZE = 150.0;
+    private static final int MAX_ESCAPED_CHAR_LENGTH = "&amp;".length();
+    private static final String OPEN_SPAN = "<span style=color:#";
+    private static final String CLOSE_SPAN = "</span>";
+    //the longest a colored char can get: closing the previous run, opening its own and escaping itself
+    private static final int MAX_COLORED_CHAR_LENGTH =
+            CLOSE_SPAN.length() + OPEN_SPAN.length() + "rrggbb>".length() + MAX_ESCAPED_CHAR_LENGTH;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     private final String fontName;
-    private final String filename;
+    private final String filename; //null when writing to a given writer
+    private final boolean isCompressed;
+    private final Writer target;
+    private BufferedWriter writer;
+    private char[] rowBuffer = new char[0]; //the escaped row, reused for every row
+    private ColorRuns colorRuns = new ColorRuns(ColorRuns.DEFAULT_THRESHOLD);
 
     public HtmlAsciiOutput(String filename, String fontName) {
+        this(filename, fontName, false);
+    }
+
+    /**
+     * Constructor
+     * @param filename the file to write the HTML to, in UTF-8
+     * @param fontName the font in which to present the ascii
+     * @param isCompressed whether to gzip the file as it is written. the filename should then end with .gz
+     */
+    public HtmlAsciiOutput(String filename, String fontName, boolean isCompressed) {
         this.fontName = fontName;
         this.filename = filename;
+        this.isCompressed = isCompressed;
+        this.target = null;
+    }
+
+    /**
+     * Constructor of an output that writes the HTML to a writer, such as the body of an HTTP response,
+     * instead of to a file. The writer is closed when the image ends.
+     * @param target the writer to write to
+     * @param fontName the font in which to present the ascii
+     */
+    public HtmlAsciiOutput(Writer target, String fontName) {
+        this.fontName = fontName;
+        this.filename = null;
+        this.isCompressed = false;
+        this.target = target;
+    }
+
+    /**
+     * Sets how different the colors of neighbouring chars may be and still share a span. A higher threshold
+     * writes fewer spans, at the cost of less accurate colors.
+     * @param colorThreshold the largest difference of a red, green or blue value within a span, out of 255.
+     *                       0 merges only equal colors
+     */
+    public void setColorThreshold(int colorThreshold) {
+        colorRuns = new ColorRuns(colorThreshold);
     }
 
     @Override
-    public void output(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+    public void begin(int charsInRow) {
+        colorRuns.reset();
+        try {
+            writer = new BufferedWriter(target == null ?
+                    OutputFiles.openWriter(filename, isCompressed) : target);
             writer.write(String.format(
                 "<!DOCTYPE html>\n"+
                 "<html>\n"+
+                "<meta charset=\"utf-8\">\n"+
                 "<body style=\""+
                     "\tCOLOR:#000000;"+
                     "\tTEXT-ALIGN:center;"+
@@ -37,27 +90,134 @@ public class HtmlAsciiOutput implements AsciiOutput {
                     "\tFONT-SIZE:%frem;"+
                     "\tLETTER-SPACING:0.15em;"+
                     "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
-                }
-                writer.newLine();
+                    fontName, BASE_FONT_SIZE/charsInRow, BASE_LINE_SPACING));
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void writeRow(char[] row) {
+        if(writer == null) return;
+        if(rowBuffer.length < row.length * MAX_ESCAPED_CHAR_LENGTH) {
+            rowBuffer = new char[row.length * MAX_ESCAPED_CHAR_LENGTH];
+        }
+
+        int length = 0;
+        for (char c : row) {
+            length = appendEscaped(length, c);
+        }
+        writeBuffer(length);
+    }
+
+    /**
+     * Outputs the next row in color. A run of similar colors may continue from the previous row, since
+     * the line break inside a span doesn't change how the page looks.
+     * @param row the chars of the row
+     * @param colors the packed RGB color of every char of the row
+     */
+    @Override
+    public void writeRow(char[] row, int[] colors) {
+        if(writer == null) return;
+        if(rowBuffer.length < row.length * MAX_COLORED_CHAR_LENGTH) {
+            rowBuffer = new char[row.length * MAX_COLORED_CHAR_LENGTH];
+        }
+
+        int length = 0;
+        for (int i = 0; i < row.length; i++) {
+            boolean wasInRun = colorRuns.isInRun();
+            if(colorRuns.startsRun(row[i], colors[i])) {
+                if(wasInRun) length = append(length, CLOSE_SPAN);
+                length = append(length, OPEN_SPAN);
+                length = appendHexColor(length, colorRuns.getColor());
+                rowBuffer[length++] = '>';
             }
+            length = appendEscaped(length, row[i]);
+        }
+        writeBuffer(length);
+    }
+
+    @Override
+    public void end() {
+        if(writer == null) return;
+        try {
+            if(colorRuns.isInRun()) writer.write(CLOSE_SPAN);
             writer.write(
                 "</p>\n"+
                 "</body>\n"+
                 "</html>\n");
+            writer.close();
+            writer = null;
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    /**
+     * Writes the row buffer as a line
+     * @param length the number of chars in the buffer
+     */
+    private void writeBuffer(int length) {
+        try {
+            writer.write(rowBuffer, 0, length);
+            writer.newLine();
         } catch(IOException e) {
-            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+            fail();
+        }
+    }
+
+    /**
+     * Copies a char into the row buffer, escaped if HTML requires it
+     * @param length the number of chars already in the buffer
+     * @param c the char
+     * @return the number of chars in the buffer after the copy
+     */
+    private int appendEscaped(int length, char c) {
+        switch(c) {
+            case '<': return append(length, "&lt;");
+            case '>': return append(length, "&gt;");
+            case '&': return append(length, "&amp;");
+            default:
+                rowBuffer[length] = c;
+                return length + 1;
+        }
+    }
+
+    /**
+     * Copies a color into the row buffer as six hex digits
+     * @param length the number of chars already in the buffer
+     * @param rgb the packed RGB color
+     * @return the number of chars in the buffer after the copy
+     */
+    private int appendHexColor(int length, int rgb) {
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            rowBuffer[length++] = HEX_DIGITS[(rgb >> shift) & 0xF];
+        }
+        return length;
+    }
+
+    /**
+     * Copies an escape sequence or a tag into the row buffer
+     * @param length the number of chars already in the buffer
+     * @param htmlRep the escape sequence or tag
+     * @return the number of chars in the buffer after the copy
+     */
+    private int append(int length, String htmlRep) {
+        htmlRep.getChars(0, htmlRep.length(), rowBuffer, length);
+        return length + htmlRep.length();
+    }
+
+    /**
+     * Reports a failed write and stops writing the current image
+     */
+    private void fail() {
+        Logger.getGlobal().severe(String.format("Failed to write to \"%s\"",
+                filename == null ? target : filename));
+        try {
+            if(writer != null) writer.close();
+        } catch(IOException ignored) {
+            //already reported
         }
+        writer = null;
     }
 }
@@ -0,0 +1,54 @@
+package ascii_output;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A package-private class of the package ascii_output.
+ * Opens the files that outputs write to. Text is always written as UTF-8, whatever the platform's default.
+ */
+final class OutputFiles {
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    private OutputFiles() {}
+
+    /**
+     * Opens a file for writing bytes
+     * @param filename the file to write to
+     * @param isCompressed whether the bytes are gzip compressed on their way to the file
+     * @return the stream of the file
+     * @throws IOException in case the file can't be created
+     */
+    static OutputStream openStream(String filename, boolean isCompressed) throws IOException {
+        OutputStream file = new FileOutputStream(filename);
+        if (!isCompressed) return file;
+        try {
+            //ascii art repeats itself enough that the fastest level compresses nearly as well as the default
+            return new GZIPOutputStream(file, GZIP_BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a file for writing text in UTF-8
+     * @param filename the file to write to
+     * @param isCompressed whether the text is gzip compressed on its way to the file
+     * @return the writer of the file
+     * @throws IOException in case the file can't be created
+     */
+    static Writer openWriter(String filename, boolean isCompressed) throws IOException {
+        return new OutputStreamWriter(openStream(filename, isCompressed), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to a plain text file, one line per row.
+ */
+public class TextAsciiOutput implements AsciiOutput {
+    private final String filename; //null when writing to a given writer
+    private final boolean isCompressed;
+    private final Writer target;
+    private BufferedWriter writer;
+
+    public TextAsciiOutput(String filename) {
+        this(filename, false);
+    }
+
+    /**
+     * Constructor
+     * @param filename the file to write the text to, in UTF-8
+     * @param isCompressed whether to gzip the file as it is written. the filename should then end with .gz
+     */
+    public TextAsciiOutput(String filename, boolean isCompressed) {
+        this.filename = filename;
+        this.isCompressed = isCompressed;
+        this.target = null;
+    }
+
+    /**
+     * Constructor of an output that writes the text to a writer, such as the body of an HTTP response,
+     * instead of to a file. The writer is closed when the image ends.
+     * @param target the writer to write to
+     */
+    public TextAsciiOutput(Writer target) {
+        this.filename = null;
+        this.isCompressed = false;
+        this.target = target;
+    }
+
+    @Override
+    public void begin(int charsInRow) {
+        try {
+            writer = new BufferedWriter(target == null ?
+                    OutputFiles.openWriter(filename, isCompressed) : target);
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void writeRow(char[] row) {
+        if(writer == null) return;
+        try {
+            writer.write(row);
+            writer.newLine();
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void end() {
+        if(writer == null) return;
+        try {
+            writer.close();
+            writer = null;
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    /**
+     * Reports a failed write and stops writing the current image
+     */
+    private void fail() {
+        Logger.getGlobal().severe(String.format("Failed to write to \"%s\"",
+                filename == null ? target : filename));
+        try {
+            if(writer != null) writer.close();
+        } catch(IOException ignored) {
+            //already reported
+        }
+        writer = null;
+    }
+}
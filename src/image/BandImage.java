@@ -0,0 +1,63 @@
+package image;
+
+import java.awt.*;
+
+/**
+ * A package-private class of the package image.
+ * A horizontal band of an image, held as packed ARGB values. The buffer is reused by ImageBandReader for
+ * every band it reads, and by FrameReader for every frame it reads into it.
+ */
+class BandImage implements Image {
+    private final int width;
+    private int height;
+    private int[] pixelArray; //packed ARGB values, row after row
+
+    /**
+     * Constructor
+     * @param width width of every band
+     */
+    BandImage(int width) {
+        this.width = width;
+        pixelArray = new int[0];
+    }
+
+    /**
+     * Resizes the band. The content of the band is undefined until it is written
+     * @param height the new height of the band
+     * @return the pixel buffer of the band, row after row
+     */
+    int[] reset(int height) {
+        this.height = height;
+        if (pixelArray.length < height * width) pixelArray = new int[height * width];
+        return pixelArray;
+    }
+
+    @Override
+    public Color getPixel(int x, int y) {
+        return new Color(getRGB(x, y));
+    }
+
+    @Override
+    public int getRGB(int x, int y) {
+        return pixelArray[x * width + y];
+    }
+
+    @Override
+    public float getSubImageBrightness(int upperRow, int leftCol, int height, int width) {
+        long luminanceSum = 0;
+        for (int row = upperRow; row < upperRow + height; row++) {
+            luminanceSum += LuminanceKernel.INSTANCE.sum(pixelArray, row * this.width + leftCol, width);
+        }
+        return Luminance.normalize(luminanceSum, (long) height * width);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+}
@@ -1,35 +1,70 @@
 package image;
 
+import metrics.Metrics;
+import metrics.Span;
+import metrics.Stage;
+
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * A package-private class of the package image.
  * @author Dan Nirel
  */
 class FileImage implements Image {
-    private static final Color DEFAULT_COLOR = Color.WHITE;
     private final int width;
     private final int height;
-    private final Color[][] pixelArray;
+    private final int[] pixelArray; //packed ARGB values, row after row
+    private final LuminanceSums luminanceSums;
 
     /**
      * Constructor
-     * @param filename the name of the file to pad & create sub-images of
-     * @throws IOException in case filename doesn't exist
+     * @param filename the name of the file to create sub-images of
+     * @throws IOException in case filename doesn't exist or isn't an image
      */
     public FileImage(String filename) throws IOException {
-        BufferedImage im = ImageIO.read(new File(filename));
-        int origWidth = im.getWidth(), origHeight = im.getHeight();
+        this(new File(filename), filename);
+    }
 
-        width = getClosestPowerOfTwo(origWidth);
-        height = getClosestPowerOfTwo(origHeight);
-        pixelArray = new Color[height][width];
+    /**
+     * Constructor of an image that is read from a stream, such as an upload
+     * @param in the encoded image. read to its end but not closed
+     * @param name the name of the image, for error messages
+     * @throws IOException in case reading fails or the stream doesn't hold an image
+     */
+    FileImage(InputStream in, String name) throws IOException {
+        this((Object) in, name);
+    }
 
-        padImage(origHeight, origWidth, im);
+    /**
+     * Decodes an image
+     * @param input a File or an InputStream holding the encoded image
+     * @param name the name of the image, for error messages
+     * @throws IOException in case reading fails or the input isn't an image
+     */
+    @SuppressWarnings("try") //the span is only closed, it measures the whole decode into the final fields
+    private FileImage(Object input, String name) throws IOException {
+        try (Span span = Metrics.start(Stage.DECODE)) {
+            ImageInputStream stream = ImageIO.createImageInputStream(input);
+            if (stream == null) throw new IOException("Cannot read " + name);
+            BufferedImage im = ImageIO.read(stream); //closes the stream, unless no reader knows the format
+            if (im == null) {
+                stream.close();
+                throw new IOException("Unsupported image format " + name);
+            }
+
+            width = im.getWidth();
+            height = im.getHeight();
+            int[] pixels = im.getRGB(0, 0, width, height, null, 0, width); //one bulk read of all pixels
+            int imageWidth = width;
+            pixelArray = pixels;
+            luminanceSums = new LuminanceSums(() -> LuminanceRows.of(pixels, imageWidth), width, height);
+        }
     }
 
     @Override
@@ -50,58 +85,54 @@ class FileImage implements Image {
      */
     @Override
     public Color getPixel(int x, int y) {
-        return pixelArray[x][y];
+        return new Color(getRGB(x, y));
     }
 
     /**
-     * A function to get a power of 2
-     * @param num the number to compare to
-     * @return the minimal power of 2 that is bigger or equals to num
+     * Returns the packed ARGB value of a specified pixel, without allocating a Color
+     * @param x the row of the pixel
+     * @param y the column of the pixel
+     * @return the ARGB value of the pixel
      */
-    private int getClosestPowerOfTwo(int num){
-        int ret = 1;
-        while(ret < num){
-            ret *= 2;
-        }
-        return ret;
+    @Override
+    public int getRGB(int x, int y) {
+        return pixelArray[x * width + y];
     }
 
     /**
-     * A function to pad the edges of a given image which the default color.
-     * @param origHeight height of the original image
-     * @param origWidth width of the original image
-     * @param im the original image
+     * @return the packed ARGB values of the pixels, row after row. not a copy, so it must not be modified
      */
-    private void padImage(int origHeight, int origWidth, BufferedImage im){
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                //if current pixel (row,col) should be an edge (is one of the pixels required to complete
-                //the original resolution size to a power of 2 in either dimension), color it with default
-                //color. otherwise, the pixel should be a copy of an original image pixel - color that
-                //pixel accordingly.
-                if(row < (height - origHeight) / 2 || row >= (height + origHeight) / 2 ||
-                        col < (width - origWidth) / 2 || col >= (width + origWidth) / 2){
-                    pixelArray[row][col] = DEFAULT_COLOR;
-                }
-                else{
-                    pixelArray[row][col] = new Color(im.getRGB(col - ((width - origWidth) / 2),
-                            row - ((height - origHeight) / 2)));
-                }
-            }
-        }
+    int[] getPixelArray() {
+        return pixelArray;
+    }
+
+    /**
+     * Computes the average brightness of a rectangle of pixels in constant time, from the luminance
+     * pyramid or the summed-area table of the image (see LuminanceSums)
+     * @param upperRow first row of the rectangle
+     * @param leftCol first column of the rectangle
+     * @param height height of the rectangle
+     * @param width width of the rectangle
+     * @return the average brightness of a pixel in the rectangle
+     */
+    @Override
+    public float getSubImageBrightness(int upperRow, int leftCol, int height, int width) {
+        long luminanceSum = luminanceSums.sum(upperRow, leftCol, height, width);
+        return Luminance.normalize(luminanceSum, (long) height * width);
     }
 
     /**
      * creates sub-images according to user-chosen resolution, from the pixel array.
      * @param size size of each sub-image (the resolution)
-     * @return a 2D array of images, each sized size*size
+     * @return a 2D array of images, each sized size*size. the sub-images are views of this image, so no
+     * pixels are copied
      */
     @Override
     public Image[][] createSubImages(int size){
         int rows = height / size, cols = width / size;
         Image[][] subImages = new PixelImage[rows][cols];
 
-        var iterator = new PixelImage(this,0,0,height,width).subImageIterator(size).iterator();
+        var iterator = subImageIterator(size).iterator();
 
         for (int row = 0; row < rows; row++) {
             for (int col = 0; col < cols; col++) {
@@ -0,0 +1,226 @@
+package image;
+
+import metrics.Metrics;
+import metrics.Stage;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Reads the frames of an animation one after the other: either the images of an animated GIF (or any
+ * other multi-image file ImageIO can read), or the image files of a directory ordered by the number in
+ * their names (frame_1.png, frame_2.png, ...).
+ * Frames are read into frame buffers created by newFrame, which can be reused for any number of frames.
+ * Every frame has the size of the first frame.
+ */
+public class FrameReader implements Closeable {
+    private static final Color DEFAULT_COLOR = Color.WHITE;
+    private static final String GIF_FORMAT = "gif";
+    private static final String GIF_STREAM_METADATA = "javax_imageio_gif_stream_1.0";
+    private static final String GIF_IMAGE_METADATA = "javax_imageio_gif_image_1.0";
+    private static final String RESTORE_TO_BACKGROUND = "restoreToBackgroundColor";
+    private static final String RESTORE_TO_PREVIOUS = "restoreToPrevious";
+
+    private final File[] frameFiles; //the frames of a directory, or null when reading a single file
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final boolean isGif;
+    private final BufferedImage canvas; //the animation so far, frames are drawn over it
+    private final int width;
+    private final int height;
+    private int nextFrame = 0;
+    private Rectangle disposeArea; //the area of the previous frame, to clear before the next one
+    private BufferedImage restoreCanvas; //the canvas before the previous frame, to restore it
+
+    /**
+     * Constructor. Reads the first frame, to learn the size of the animation.
+     * @param path an animated image file, or a directory of numbered frame files
+     * @throws IOException in case the path doesn't exist or has no readable frames
+     */
+    public FrameReader(String path) throws IOException {
+        File source = new File(path);
+        int canvasWidth, canvasHeight;
+        if (source.isDirectory()) {
+            frameFiles = source.listFiles(File::isFile);
+            if (frameFiles == null || frameFiles.length == 0) throw new IOException("No frames in " + path);
+            Arrays.sort(frameFiles, Comparator.comparingLong(FrameReader::frameNumber)
+                    .thenComparing(File::getName));
+            stream = null;
+            reader = null;
+            isGif = false;
+            BufferedImage first = ImageIO.read(frameFiles[0]);
+            if (first == null) throw new IOException("Unsupported image format " + frameFiles[0]);
+            canvasWidth = first.getWidth();
+            canvasHeight = first.getHeight();
+        }
+        else {
+            frameFiles = null;
+            stream = ImageIO.createImageInputStream(source);
+            if (stream == null) throw new IOException("Cannot open " + path);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                stream.close();
+                throw new IOException("Unsupported image format " + path);
+            }
+            reader = readers.next();
+            reader.setInput(stream, false, false);
+            isGif = reader.getFormatName().equalsIgnoreCase(GIF_FORMAT);
+            Node screen = isGif ? findNode(reader.getStreamMetadata(), GIF_STREAM_METADATA,
+                    "LogicalScreenDescriptor") : null;
+            canvasWidth = screen != null ? intAttribute(screen, "logicalScreenWidth") : reader.getWidth(0);
+            canvasHeight = screen != null ? intAttribute(screen, "logicalScreenHeight") : reader.getHeight(0);
+        }
+
+        canvas = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);
+        clear(new Rectangle(0, 0, canvasWidth, canvasHeight));
+        width = canvasWidth;
+        height = canvasHeight;
+    }
+
+    /**
+     * @return the width of every frame, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of every frame, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return a new frame buffer to read frames into
+     */
+    public Image newFrame() {
+        BandImage frame = new BandImage(width);
+        frame.reset(height);
+        return frame;
+    }
+
+    /**
+     * Reads the next frame of the animation into a frame buffer
+     * @param frame a frame buffer created by newFrame of this reader. its previous content is replaced
+     * @return true if a frame was read, false if the animation has no more frames
+     * @throws IOException in case decoding fails
+     */
+    public boolean readFrame(Image frame) throws IOException {
+        if (!(frame instanceof BandImage) || frame.getWidth() != width) {
+            throw new IllegalArgumentException("Not a frame buffer of this reader");
+        }
+        return Metrics.time(Stage.DECODE, () -> {
+            if (!drawNextFrame()) return false;
+
+            int[] pixels = ((BandImage) frame).reset(height);
+            canvas.getRGB(0, 0, width, height, pixels, 0, width);
+            nextFrame++;
+            return true;
+        });
+    }
+
+    /**
+     * Draws the next frame over the canvas, after disposing of the previous frame as the GIF asked
+     * @return false if there are no more frames
+     */
+    private boolean drawNextFrame() throws IOException {
+        if (frameFiles != null) {
+            if (nextFrame >= frameFiles.length) return false;
+            BufferedImage im = ImageIO.read(frameFiles[nextFrame]);
+            if (im == null) throw new IOException("Unsupported image format " + frameFiles[nextFrame]);
+            clear(new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+            draw(im, 0, 0);
+            return true;
+        }
+
+        BufferedImage im;
+        try {
+            im = reader.read(nextFrame);
+        } catch (IndexOutOfBoundsException e) {
+            return false; //past the last frame
+        }
+        if (!isGif) {
+            draw(im, 0, 0);
+            return true;
+        }
+
+        if (restoreCanvas != null) {
+            canvas.setData(restoreCanvas.getRaster());
+            restoreCanvas = null;
+        }
+        else if (disposeArea != null) {
+            clear(disposeArea);
+        }
+        disposeArea = null;
+
+        IIOMetadata metadata = reader.getImageMetadata(nextFrame);
+        Node descriptor = findNode(metadata, GIF_IMAGE_METADATA, "ImageDescriptor");
+        Node control = findNode(metadata, GIF_IMAGE_METADATA, "GraphicControlExtension");
+        int left = descriptor == null ? 0 : intAttribute(descriptor, "imageLeftPosition");
+        int top = descriptor == null ? 0 : intAttribute(descriptor, "imageTopPosition");
+        String disposal = control == null ? "" : control.getAttributes().getNamedItem("disposalMethod")
+                .getNodeValue();
+        if (disposal.equals(RESTORE_TO_PREVIOUS)) {
+            restoreCanvas = new BufferedImage(canvas.getWidth(), canvas.getHeight(), canvas.getType());
+            restoreCanvas.setData(canvas.getRaster());
+        }
+        else if (disposal.equals(RESTORE_TO_BACKGROUND)) {
+            disposeArea = new Rectangle(left, top, im.getWidth(), im.getHeight());
+        }
+        draw(im, left, top);
+        return true;
+    }
+
+    private void draw(BufferedImage im, int left, int top) {
+        Graphics2D g = canvas.createGraphics();
+        g.drawImage(im, left, top, null);
+        g.dispose();
+    }
+
+    private void clear(Rectangle area) {
+        Graphics2D g = canvas.createGraphics();
+        g.setColor(DEFAULT_COLOR);
+        g.fill(area);
+        g.dispose();
+    }
+
+    private static Node findNode(IIOMetadata metadata, String format, String name) {
+        if (metadata == null) return null;
+        for (Node node = metadata.getAsTree(format).getFirstChild(); node != null;
+             node = node.getNextSibling()) {
+            if (node.getNodeName().equals(name)) return node;
+        }
+        return null;
+    }
+
+    private static int intAttribute(Node node, String name) {
+        return Integer.parseInt(node.getAttributes().getNamedItem(name).getNodeValue());
+    }
+
+    /**
+     * @param file a frame file
+     * @return the last number in the name of the file, or -1 if it has none
+     */
+    private static long frameNumber(File file) {
+        String digits = file.getName().replaceAll("^.*?(\\d+)\\D*$", "$1");
+        return digits.matches("\\d{1,18}") ? Long.parseLong(digits) : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) reader.dispose();
+        if (stream != null) stream.close();
+    }
+}
@@ -2,6 +2,7 @@ package image;
 
 import java.awt.*;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Facade for the image module and an interface representing an image.
@@ -13,8 +14,61 @@ public interface Image {
     int getHeight();
 
     /**
-     * Open an image from file. Each dimensions of the returned image is guaranteed
-     * to be a power of 2, but the dimensions may be different.
+     * Returns the packed ARGB value of a pixel. Implementations backed by a primitive buffer should
+     * override this, so hot loops can read pixels without allocating a Color per pixel.
+     * @param x the row of the pixel
+     * @param y the column of the pixel
+     * @return the ARGB value of the pixel
+     */
+    default int getRGB(int x, int y) {
+        return getPixel(x, y).getRGB();
+    }
+
+    /**
+     * Computes the average brightness of a rectangle of pixels, where 0 is black and 1 is white.
+     * Walks every pixel of the rectangle; implementations that can answer faster should override this.
+     * @param upperRow first row of the rectangle
+     * @param leftCol first column of the rectangle
+     * @param height height of the rectangle
+     * @param width width of the rectangle
+     * @return the average brightness of a pixel in the rectangle
+     */
+    default float getSubImageBrightness(int upperRow, int leftCol, int height, int width) {
+        long luminanceSum = 0;
+        for (int row = upperRow; row < upperRow + height; row++) {
+            for (int col = leftCol; col < leftCol + width; col++) {
+                luminanceSum += Luminance.of(getRGB(row, col));
+            }
+        }
+        return Luminance.normalize(luminanceSum, (long) height * width);
+    }
+
+    /**
+     * Computes the average color of a rectangle of pixels. Walks every pixel of the rectangle.
+     * @param upperRow first row of the rectangle
+     * @param leftCol first column of the rectangle
+     * @param height height of the rectangle
+     * @param width width of the rectangle
+     * @return the packed RGB value of the average color of a pixel in the rectangle, without alpha
+     */
+    default int getSubImageColor(int upperRow, int leftCol, int height, int width) {
+        long red = 0, green = 0, blue = 0;
+        for (int row = upperRow; row < upperRow + height; row++) {
+            for (int col = leftCol; col < leftCol + width; col++) {
+                int argb = getRGB(row, col);
+                red += (argb >> 16) & 0xFF;
+                green += (argb >> 8) & 0xFF;
+                blue += argb & 0xFF;
+            }
+        }
+        long pixels = (long) height * width, half = pixels / 2; //rounds to the nearest value
+        return (int) ((red + half) / pixels) << 16 | (int) ((green + half) / pixels) << 8 |
+                (int) ((blue + half) / pixels);
+    }
+
+    /**
+     * Open an image from file. The returned image has exactly the dimensions of the file,
+     * without any padding.
      * @param filename a path to an image file on disk
      * @return an object implementing Image if the operation was successful,
      * null otherwise
@@ -27,6 +81,20 @@ public interface Image {
         }
     }
 
+    /**
+     * Decode an image from a stream, such as an upload. The stream is read but not closed.
+     * @param in the encoded image
+     * @return an object implementing Image if the operation was successful,
+     * null otherwise
+     */
+    static Image fromStream(InputStream in) {
+        try {
+            return new FileImage(in, "stream");
+        } catch(IOException ioe) {
+            return null;
+        }
+    }
+
     /**
      * Allows iterating the pixels' colors by order (first row, second row and so on).
      * @return an Iterable<Color> that can be traversed with a foreach loop
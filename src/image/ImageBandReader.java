@@ -0,0 +1,129 @@
+package image;
+
+import metrics.Metrics;
+import metrics.Stage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Reads an image file one horizontal band at a time, from top to bottom, so images that don't fit in
+ * memory can still be processed.
+ * PNGs that PngRowReader supports are decoded in a single pass, a row at a time, so only the requested band
+ * is ever in memory. Other images are decoded whole on the first read if they fit in a quarter of the
+ * heap, and the bands are copied from the decoded image. Only larger images of other formats are read
+ * band by band through ImageIO, whose decoders of formats that can't seek to a row (such as JPEG) decode
+ * from the top of the file up to the band on each read.
+ */
+public class ImageBandReader implements Closeable {
+    //the largest image that isn't streamed and is still decoded whole, as ARGB in a quarter of the heap
+    private static final long MAX_WHOLE_IMAGE_PIXELS = Runtime.getRuntime().maxMemory() / 4 / Integer.BYTES;
+    private static final String BAND_ORDER_ERR = "Bands must be read from top to bottom, within the image";
+
+    private final PngRowReader rows; //null if the file isn't a PNG that can be decoded a row at a time
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+    private final BandImage band;
+    private BufferedImage whole = null; //the decoded image, if it isn't streamed and fits in memory
+    private int nextRow = 0; //the first row the next band may start at
+
+    /**
+     * Constructor. Reads only the header of the file.
+     * @param filename a path to an image file on disk
+     * @throws IOException in case the file doesn't exist or its format isn't supported
+     */
+    public ImageBandReader(String filename) throws IOException {
+        rows = PngRowReader.open(new File(filename));
+        if (rows != null) {
+            stream = null;
+            reader = null;
+            width = rows.getWidth();
+            height = rows.getHeight();
+            band = new BandImage(width);
+            return;
+        }
+        stream = ImageIO.createImageInputStream(new File(filename));
+        if (stream == null) throw new IOException("Cannot open " + filename);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            stream.close();
+            throw new IOException("Unsupported image format " + filename);
+        }
+        reader = readers.next();
+        reader.setInput(stream, true, true);
+
+        width = reader.getWidth(0);
+        height = reader.getHeight(0);
+        band = new BandImage(width);
+    }
+
+    /**
+     * @return the width of the image, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the image, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Reads a band of full rows of the image. Each band must start at or below the end of the previous one.
+     * The returned image is overwritten by the next call, so it must not be kept.
+     * @param upperRow the first row of the band
+     * @param bandHeight the number of rows in the band
+     * @return the band as an image of getWidth() * bandHeight pixels
+     * @throws IOException in case decoding fails
+     * @throws IllegalArgumentException in case the band starts above the end of the previous band, or
+     * doesn't fit in the image
+     */
+    public Image readBand(int upperRow, int bandHeight) throws IOException {
+        if (upperRow < nextRow || bandHeight < 0 || upperRow + bandHeight > height) {
+            throw new IllegalArgumentException(BAND_ORDER_ERR);
+        }
+        nextRow = upperRow + bandHeight;
+        return Metrics.time(Stage.DECODE, () -> {
+            int[] pixels = band.reset(bandHeight);
+            if (rows != null) {
+                while (rows.getNextRow() < upperRow) rows.skipRow();
+                for (int y = 0; y < bandHeight; y++) rows.readRow(pixels, y * width);
+            }
+            else if ((long) width * height <= MAX_WHOLE_IMAGE_PIXELS) {
+                if (whole == null) whole = reader.read(0);
+                whole.getRGB(0, upperRow, width, bandHeight, pixels, 0, width);
+            }
+            else {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, upperRow, width, bandHeight));
+                BufferedImage im = reader.read(0, param);
+                im.getRGB(0, 0, width, bandHeight, pixels, 0, width);
+            }
+            return band;
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        whole = null;
+        if (rows != null) {
+            rows.close();
+            return;
+        }
+        reader.dispose();
+        stream.close();
+    }
+}
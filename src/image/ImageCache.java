@@ -0,0 +1,135 @@
+package image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A cache of decoded images on disk. The first time an image file is opened, its pixels are
+ * written to the cache directory; later opens of the same file map the cached pixels into memory instead
+ * of decoding the file again. A cache entry is found by the path, modification time and size of the image
+ * file, so a modified file is decoded again.
+ */
+public class ImageCache {
+    private static final int CACHE_FILE_MAGIC = 0x41_53_43_32; //"ASC2"
+    private static final int HEADER_BYTES = 32; //magic, width, height, modification time, size, padding
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final String CACHE_FILE_EXTENSION = ".pixels";
+    private static final int WRITE_CHUNK_PIXELS = 1 << 16;
+    private final File cacheDir;
+
+    /**
+     * Constructor
+     * @param cacheDir the directory to keep the decoded images in. created if needed
+     */
+    public ImageCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Opens an image file, from the cache if it was already decoded. The returned image is the same as the
+     * one Image.fromFile returns.
+     * @param filename a path to an image file on disk
+     * @return an object implementing Image if the operation was successful, null otherwise
+     */
+    public Image open(String filename) {
+        File source = new File(filename);
+        if (!source.isFile()) return null;
+        long modified = source.lastModified(), size = source.length();
+        File cacheFile;
+        try {
+            cacheFile = new File(cacheDir, keyOf(source.getCanonicalPath(), modified, size) + CACHE_FILE_EXTENSION);
+            Image cached = map(cacheFile, modified, size);
+            if (cached != null) return cached;
+        } catch (IOException e) {
+            return Image.fromFile(filename); //the cache can't be used, decode as usual
+        }
+
+        Image decoded = Image.fromFile(filename);
+        if (!(decoded instanceof FileImage)) return decoded;
+        try {
+            write((FileImage) decoded, cacheFile, modified, size);
+            Image cached = map(cacheFile, modified, size);
+            if (cached != null) return cached; //the decoded copy can now be collected
+        } catch (IOException e) {
+            //the image was decoded, only caching it failed
+        }
+        return decoded;
+    }
+
+    /**
+     * Maps a cache file into memory
+     * @return the cached image, or null if the file is missing, too large to map or belongs to another
+     * version of the image file
+     */
+    private static Image map(File cacheFile, long modified, long size) throws IOException {
+        if (!cacheFile.isFile()) return null;
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) return null;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(BYTE_ORDER);
+            int width = mapped.getInt(Integer.BYTES), height = mapped.getInt(Integer.BYTES * 2);
+            if (mapped.getInt(0) != CACHE_FILE_MAGIC || mapped.getLong(Integer.BYTES * 3) != modified ||
+                    mapped.getLong(Integer.BYTES * 3 + Long.BYTES) != size ||
+                    channel.size() != HEADER_BYTES + (long) width * height * Integer.BYTES) {
+                return null;
+            }
+            IntBuffer pixels = mapped.position(HEADER_BYTES).slice().order(BYTE_ORDER).asIntBuffer();
+            return new MappedImage(width, height, pixels); //the mapping outlives the closed channel
+        }
+    }
+
+    /**
+     * Writes the pixels of a decoded image to a cache file. The file is written under a temporary name and
+     * then renamed, so a crash never leaves a partial cache file behind.
+     */
+    private void write(FileImage image, File cacheFile, long modified, long size) throws IOException {
+        long bytes = HEADER_BYTES + (long) image.getWidth() * image.getHeight() * Integer.BYTES;
+        if (bytes > Integer.MAX_VALUE) return; //too large to map in one piece
+        Files.createDirectories(cacheDir.toPath());
+        File tempFile = File.createTempFile(cacheFile.getName(), null, cacheDir);
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(BYTE_ORDER);
+            header.putInt(CACHE_FILE_MAGIC).putInt(image.getWidth()).putInt(image.getHeight())
+                    .putLong(modified).putLong(size).rewind();
+            channel.write(header);
+
+            int[] pixels = image.getPixelArray();
+            ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK_PIXELS * Integer.BYTES).order(BYTE_ORDER);
+            for (int offset = 0; offset < pixels.length; offset += WRITE_CHUNK_PIXELS) {
+                int length = Math.min(WRITE_CHUNK_PIXELS, pixels.length - offset);
+                chunk.clear();
+                chunk.asIntBuffer().put(pixels, offset, length);
+                chunk.limit(length * Integer.BYTES);
+                while (chunk.hasRemaining()) channel.write(chunk);
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String keyOf(String path, long modified, long size) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    (path + '\0' + modified + '\0' + size).getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (int i = 0; i < digest.length / 2; i++) key.append(String.format("%02x", digest[i]));
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //every JVM has SHA-256
+        }
+    }
+}
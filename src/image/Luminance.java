@@ -0,0 +1,39 @@
+package image;
+
+/**
+ * A package-private class of the package image.
+ * Converts packed ARGB pixels to luminance. Luminance is kept in fixed point (the channel weights are
+ * scaled to sum to WEIGHT_SCALE), so sums of many pixels are exact integers.
+ */
+final class Luminance {
+    static final int MAX_RGB = 255;
+    static final int WEIGHT_RED = 2126;
+    static final int WEIGHT_GREEN = 7152;
+    static final int WEIGHT_BLUE = 722;
+    private static final int WEIGHT_SCALE = WEIGHT_RED + WEIGHT_GREEN + WEIGHT_BLUE;
+    /** the luminance of a white pixel */
+    static final int MAX_LUMINANCE = MAX_RGB * WEIGHT_SCALE;
+
+    private Luminance() {}
+
+    /**
+     * Computes the fixed point luminance of a pixel
+     * @param argb the packed ARGB value of the pixel
+     * @return the luminance, between 0 and MAX_LUMINANCE
+     */
+    static int of(int argb) {
+        return ((argb >> 16) & MAX_RGB) * WEIGHT_RED +
+                ((argb >> 8) & MAX_RGB) * WEIGHT_GREEN +
+                (argb & MAX_RGB) * WEIGHT_BLUE;
+    }
+
+    /**
+     * Converts a luminance sum back to an average brightness
+     * @param luminanceSum the sum of the luminance of some pixels
+     * @param pixels the amount of pixels that were summed
+     * @return the average brightness of a pixel, between 0 and 1
+     */
+    static float normalize(long luminanceSum, long pixels) {
+        return (float) ((double) luminanceSum / ((double) pixels * MAX_LUMINANCE));
+    }
+}
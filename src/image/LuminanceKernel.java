@@ -0,0 +1,68 @@
+package image;
+
+import java.util.logging.Logger;
+
+/**
+ * A package-private class of the package image.
+ * Converts rows of packed ARGB pixels to luminance and sums them, working on primitive arrays.
+ * This is the scalar kernel. When the jdk.incubator.vector module is available, the kernel in use is
+ * VectorLuminanceKernel, which overrides both methods with SIMD lanes and gives exactly the same results.
+ * The kernel is chosen once, when the class is loaded.
+ */
+class LuminanceKernel {
+    //set this system property to true to use the scalar kernel even when the vector module is available
+    private static final String SCALAR_PROPERTY = "ascii_art.scalarLuminance";
+    private static final String VECTOR_KERNEL_CLASS = "image.VectorLuminanceKernel";
+    private static final String KERNEL_MSG = "Luminance kernel: ";
+    /** the kernel in use */
+    static final LuminanceKernel INSTANCE = load();
+
+    /**
+     * Converts a row of pixels to luminance
+     * @param argb packed ARGB pixels
+     * @param offset the index of the first pixel of the row in argb
+     * @param luminance receives the luminance of the pixels, from index 0
+     * @param length the number of pixels in the row
+     */
+    void toLuminance(int[] argb, int offset, int[] luminance, int length) {
+        for (int i = 0; i < length; i++) luminance[i] = Luminance.of(argb[offset + i]);
+    }
+
+    /**
+     * Sums the luminance of a row of pixels
+     * @param argb packed ARGB pixels
+     * @param offset the index of the first pixel of the row in argb
+     * @param length the number of pixels in the row
+     * @return the luminance sum of the pixels
+     */
+    long sum(int[] argb, int offset, int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i++) sum += Luminance.of(argb[offset + i]);
+        return sum;
+    }
+
+    /**
+     * @return a short name of the kernel, for diagnostics
+     */
+    String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Loads the vector kernel, unless it is disabled or the vector module is missing
+     * @return the kernel to use
+     */
+    private static LuminanceKernel load() {
+        LuminanceKernel kernel = new LuminanceKernel();
+        if (!Boolean.getBoolean(SCALAR_PROPERTY)) {
+            try {
+                kernel = (LuminanceKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                //not compiled in, or the JVM was started without --add-modules jdk.incubator.vector
+            }
+        }
+        Logger.getGlobal().fine(KERNEL_MSG + kernel.getName());
+        return kernel;
+    }
+}
@@ -0,0 +1,140 @@
+package image;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A package-private class of the package image.
+ * A box-filtered pyramid of an image's luminance. Entry (row, col) of level k holds the luminance sum of
+ * the 2^k x 2^k block of pixels that starts at pixel (row * 2^k, col * 2^k), so the sum of any square
+ * block that is aligned to its power-of-two size is a single lookup. Levels are built on first use, each
+ * one from the level below it, so stepping the resolution up or down by a factor of two costs a quarter of
+ * the level below at most.
+ * The levels whose sums fit in an int are int arrays, and only the higher levels are long arrays. So all
+ * levels together take about 1.34 bytes per pixel, a third of the image's own 4-byte ARGB pixels.
+ */
+class LuminancePyramid {
+    //the highest level whose block sums fit in an int
+    private static final int TOP_INT_LEVEL = topIntLevel();
+    private final LuminanceRows rows;
+    private final int width;
+    private final int height;
+    //index k holds level k, an int[] up to TOP_INT_LEVEL and a long[] above it. level 0 is never stored
+    private final AtomicReferenceArray<Object> levels;
+
+    /**
+     * Constructor. Builds nothing yet
+     * @param rows the rows of the image, as luminance. only read while building the first level
+     * @param width width of the image
+     * @param height height of the image
+     */
+    LuminancePyramid(LuminanceRows rows, int width, int height) {
+        this.rows = rows;
+        this.width = width;
+        this.height = height;
+        int topLevel = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(Math.min(width, height));
+        levels = new AtomicReferenceArray<>(topLevel + 1);
+    }
+
+    /**
+     * @param upperRow first row of a rectangle
+     * @param leftCol first column of the rectangle
+     * @param height height of the rectangle
+     * @param width width of the rectangle
+     * @return true if the rectangle is a block of one of the levels, so sum can find its luminance
+     */
+    boolean covers(int upperRow, int leftCol, int height, int width) {
+        return height == width && width > 1 && (width & (width - 1)) == 0 &&
+                ((upperRow | leftCol) & (width - 1)) == 0 &&
+                upperRow + height <= this.height && leftCol + width <= this.width;
+    }
+
+    /**
+     * Sums the luminance of a block, building the level of the block if needed
+     * @param upperRow first row of the block, a multiple of size
+     * @param leftCol first column of the block, a multiple of size
+     * @param size the height and width of the block, a power of two greater than 1
+     * @return the luminance sum of the block
+     */
+    long sum(int upperRow, int leftCol, int size) {
+        int level = Integer.numberOfTrailingZeros(size);
+        return valueAt(getLevel(level), (upperRow >> level) * (width >> level) + (leftCol >> level));
+    }
+
+    /**
+     * @param level a level, 1 or more
+     * @return the block sums of the level, row after row
+     */
+    private Object getLevel(int level) {
+        Object sums = levels.get(level);
+        if (sums == null) {
+            synchronized (this) {
+                sums = levels.get(level);
+                if (sums == null) {
+                    sums = level == 1 ? buildFirstLevel() : buildLevel(getLevel(level - 1), level);
+                    levels.set(level, sums);
+                }
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Sums every 2x2 block of pixels, converting two rows of the image at a time
+     * @return the block sums of level 1
+     */
+    private int[] buildFirstLevel() {
+        int levelWidth = width >> 1, levelHeight = height >> 1;
+        int[] sums = new int[levelWidth * levelHeight];
+        int[] upperLuminance = new int[width], lowerLuminance = new int[width];
+        for (int row = 0; row < levelHeight; row++) {
+            rows.toLuminance(2 * row, upperLuminance);
+            rows.toLuminance(2 * row + 1, lowerLuminance);
+            for (int col = 0; col < levelWidth; col++) {
+                sums[row * levelWidth + col] = upperLuminance[2 * col] + upperLuminance[2 * col + 1] +
+                        lowerLuminance[2 * col] + lowerLuminance[2 * col + 1];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Sums every 2x2 block of the level below
+     * @param below the block sums of the level below
+     * @param level the level to build, 2 or more
+     * @return the block sums of the level, an int[] up to TOP_INT_LEVEL and a long[] above it
+     */
+    private Object buildLevel(Object below, int level) {
+        int belowWidth = width >> (level - 1);
+        int levelWidth = width >> level, levelHeight = height >> level;
+        int[] intSums = level <= TOP_INT_LEVEL ? new int[levelWidth * levelHeight] : null;
+        long[] longSums = intSums == null ? new long[levelWidth * levelHeight] : null;
+        for (int row = 0; row < levelHeight; row++) {
+            int upper = 2 * row * belowWidth, lower = upper + belowWidth;
+            for (int col = 0; col < levelWidth; col++) {
+                long sum = valueAt(below, upper + 2 * col) + valueAt(below, upper + 2 * col + 1) +
+                        valueAt(below, lower + 2 * col) + valueAt(below, lower + 2 * col + 1);
+                if (intSums != null) intSums[row * levelWidth + col] = (int) sum;
+                else longSums[row * levelWidth + col] = sum;
+            }
+        }
+        return intSums != null ? intSums : longSums;
+    }
+
+    /**
+     * @param sums the block sums of a level
+     * @param index the index of a block
+     * @return the sum of the block
+     */
+    private static long valueAt(Object sums, int index) {
+        return sums instanceof int[] ? ((int[]) sums)[index] : ((long[]) sums)[index];
+    }
+
+    /**
+     * @return the highest level whose blocks, of 4^level pixels, sum to at most Integer.MAX_VALUE
+     */
+    private static int topIntLevel() {
+        int level = 0;
+        while (((long) Luminance.MAX_LUMINANCE << (2 * (level + 1))) <= Integer.MAX_VALUE) level++;
+        return level;
+    }
+}
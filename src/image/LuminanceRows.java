@@ -0,0 +1,40 @@
+package image;
+
+import java.nio.IntBuffer;
+
+/**
+ * A package-private interface of the package image.
+ * Converts the rows of an image to luminance, one row at a time, with the luminance kernel.
+ */
+interface LuminanceRows {
+    /**
+     * Converts a row of the image to luminance
+     * @param row the row
+     * @param rowLuminance receives the luminance of the pixels of the row
+     */
+    void toLuminance(int row, int[] rowLuminance);
+
+    /**
+     * @param pixelArray the packed ARGB values of an image, row after row
+     * @param width width of the image
+     * @return the rows of the image, converted straight from the array
+     */
+    static LuminanceRows of(int[] pixelArray, int width) {
+        return (row, rowLuminance) ->
+                LuminanceKernel.INSTANCE.toLuminance(pixelArray, row * width, rowLuminance, width);
+    }
+
+    /**
+     * @param pixelBuffer the packed ARGB values of an image, row after row
+     * @param width width of the image
+     * @return the rows of the image, each copied out of the buffer in bulk before it is converted. the
+     *         rows share one copy buffer, so they must be converted by one thread at a time
+     */
+    static LuminanceRows of(IntBuffer pixelBuffer, int width) {
+        int[] rowPixels = new int[width];
+        return (row, rowLuminance) -> {
+            pixelBuffer.get(row * width, rowPixels, 0, width);
+            LuminanceKernel.INSTANCE.toLuminance(rowPixels, 0, rowLuminance, width);
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package image;
+
+import java.util.function.Supplier;
+
+/**
+ * A package-private class of the package image.
+ * Sums the luminance of rectangles of an image in constant time. A square block aligned to its
+ * power-of-two size, such as a sub-image at a power-of-two resolution of a power-of-two image, is read
+ * from one level of a LuminancePyramid. The first rectangle that the pyramid doesn't cover builds a
+ * summed-area table, which answers every rectangle from then on, so the pyramid is dropped and the image
+ * never keeps both.
+ */
+class LuminanceSums {
+    private final Supplier<LuminanceRows> rows;
+    private final int width;
+    private final int height;
+    private volatile LuminancePyramid pyramid; //null once the summed-area table is built
+    private volatile LuminanceIntegral integral; //built on the first rectangle the pyramid doesn't cover
+
+    /**
+     * Constructor. Builds nothing yet
+     * @param rows creates a reader of the rows of the image, as luminance. called once for the pyramid
+     * and once for the summed-area table
+     * @param width width of the image
+     * @param height height of the image
+     */
+    LuminanceSums(Supplier<LuminanceRows> rows, int width, int height) {
+        this.rows = rows;
+        this.width = width;
+        this.height = height;
+        pyramid = new LuminancePyramid(rows.get(), width, height);
+    }
+
+    /**
+     * Sums the luminance of a rectangle of pixels
+     * @param upperRow first row of the rectangle
+     * @param leftCol first column of the rectangle
+     * @param height height of the rectangle
+     * @param width width of the rectangle
+     * @return the luminance sum of the rectangle
+     */
+    long sum(int upperRow, int leftCol, int height, int width) {
+        LuminanceIntegral integral = this.integral;
+        if (integral == null) {
+            LuminancePyramid pyramid = this.pyramid;
+            if (pyramid != null && pyramid.covers(upperRow, leftCol, height, width)) {
+                return pyramid.sum(upperRow, leftCol, height);
+            }
+            integral = getIntegral();
+        }
+        return integral.sum(upperRow, leftCol, height, width);
+    }
+
+    /**
+     * @return the summed-area table of the image, building it and dropping the pyramid if needed
+     */
+    private synchronized LuminanceIntegral getIntegral() {
+        if (integral == null) {
+            integral = new LuminanceIntegral(rows.get(), width, height);
+            pyramid = null;
+        }
+        return integral;
+    }
+}
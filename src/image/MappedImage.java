@@ -0,0 +1,55 @@
+package image;
+
+import java.awt.*;
+import java.nio.IntBuffer;
+
+/**
+ * A package-private class of the package image.
+ * An image whose packed ARGB pixels are read straight from a memory-mapped file, so opening it copies
+ * nothing into the heap.
+ */
+class MappedImage implements Image {
+    private final int width;
+    private final int height;
+    private final IntBuffer pixelBuffer; //packed ARGB values, row after row
+    private final LuminanceSums luminanceSums;
+
+    /**
+     * Constructor
+     * @param width width of the image
+     * @param height height of the image
+     * @param pixelBuffer the mapped pixels, row after row
+     */
+    MappedImage(int width, int height, IntBuffer pixelBuffer) {
+        this.width = width;
+        this.height = height;
+        this.pixelBuffer = pixelBuffer;
+        luminanceSums = new LuminanceSums(() -> LuminanceRows.of(pixelBuffer, width), width, height);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Color getPixel(int x, int y) {
+        return new Color(getRGB(x, y));
+    }
+
+    @Override
+    public int getRGB(int x, int y) {
+        return pixelBuffer.get(x * width + y);
+    }
+
+    @Override
+    public float getSubImageBrightness(int upperRow, int leftCol, int height, int width) {
+        long luminanceSum = luminanceSums.sum(upperRow, leftCol, height, width);
+        return Luminance.normalize(luminanceSum, (long) height * width);
+    }
+}
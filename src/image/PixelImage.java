@@ -3,10 +3,14 @@ package image;
 import java.awt.*;
 
 /**
- * A class that represents an image that is created from other existing image
+ * A class that represents an image that is created from other existing image.
+ * The sub-image is a view: it keeps a reference to the original image and an offset into it, so creating
+ * one doesn't copy any pixels.
  */
 public class PixelImage implements Image {
-    private final Color[][] pixelPalette;
+    private final Image source;
+    private final int upperRow;
+    private final int leftCol;
     private final int height;
     private final int width;
 
@@ -21,29 +25,38 @@ public class PixelImage implements Image {
     public PixelImage(Image im, int upperRow, int leftCol, int height, int width){
         this.height = height;
         this.width = width;
-        pixelPalette = createPixelPalette(im, upperRow, leftCol);
-    }
-
-    /**
-     * creates the actual image data
-     * @param im the image from where to get the pixels
-     * @param upperRow the row from where to start taking pixels
-     * @param leftCol the col from where to start taking pixels
-     * @return a 2D Color array, contains the relevant pixels from the given image
-     */
-    private Color[][] createPixelPalette(Image im, int upperRow, int leftCol){
-        Color[][] ret = new Color[height][width];
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                ret[row][col] = im.getPixel(upperRow+row, leftCol+col);
-            }
+        //a view of a view reads straight from the original image, so lookups never chain
+        if(im instanceof PixelImage){
+            PixelImage view = (PixelImage) im;
+            this.source = view.source;
+            this.upperRow = view.upperRow + upperRow;
+            this.leftCol = view.leftCol + leftCol;
+        }
+        else{
+            this.source = im;
+            this.upperRow = upperRow;
+            this.leftCol = leftCol;
         }
-        return ret;
     }
 
     @Override
     public Color getPixel(int x, int y) {
-        return pixelPalette[x][y];
+        return new Color(getRGB(x, y));
+    }
+
+    @Override
+    public int getRGB(int x, int y) {
+        return source.getRGB(upperRow + x, leftCol + y);
+    }
+
+    @Override
+    public float getSubImageBrightness(int upperRow, int leftCol, int height, int width) {
+        return source.getSubImageBrightness(this.upperRow + upperRow, this.leftCol + leftCol, height, width);
+    }
+
+    @Override
+    public int getSubImageColor(int upperRow, int leftCol, int height, int width) {
+        return source.getSubImageColor(this.upperRow + upperRow, this.leftCol + leftCol, height, width);
     }
 
     @Override
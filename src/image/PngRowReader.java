@@ -0,0 +1,302 @@
+package image;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A package-private class of the package image.
+ * Decodes the rows of a PNG file in one pass from top to bottom, keeping only the current and the
+ * previous row in memory, so reading an image band by band costs one decode of the file however many bands
+ * there are. Supports the PNGs whose pixels ImageIO turns into the same ARGB values without any color
+ * conversion: non-interlaced 8-bit RGB without a transparent color, 8-bit RGBA and palette images of any
+ * bit depth. Palettes are expanded the way ImageIO expands them, so both decoders agree on every pixel.
+ */
+class PngRowReader implements Closeable {
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int RGBA = 6;
+    private static final int HEADER_LENGTH = 13;
+    private static final int OPAQUE = 0xFF000000;
+    private static final int BYTE_MASK = 0xFF;
+    private static final String BAD_FILTER_ERR = "Unknown PNG row filter ";
+
+    private final DataInputStream file;
+    private final DataInputStream data; //the inflated rows, each a filter byte followed by its bytes
+    private final int width;
+    private final int height;
+    private final int colorType;
+    private final int bitDepth;
+    private final int bytesPerPixel; //the distance between the bytes a filter relates, at least 1
+    private final int[] palette; //ARGB of every index, for palette images
+    private byte[] row;
+    private byte[] previousRow;
+    private int nextRow = 0;
+
+    private PngRowReader(DataInputStream file, int firstDataLength, int width, int height, int colorType,
+                         int bitDepth, int[] palette) {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.colorType = colorType;
+        this.bitDepth = bitDepth;
+        this.palette = palette;
+        int bitsPerPixel = bitDepth * (colorType == RGB ? 3 : colorType == RGBA ? 4 : 1);
+        bytesPerPixel = Math.max(1, bitsPerPixel / Byte.SIZE);
+        int rowBytes = (int) (((long) width * bitsPerPixel + Byte.SIZE - 1) / Byte.SIZE);
+        row = new byte[rowBytes];
+        previousRow = new byte[rowBytes];
+        data = new DataInputStream(new InflaterInputStream(new ImageData(firstDataLength)));
+    }
+
+    /**
+     * Opens a PNG file for decoding its rows, reading its chunks up to the image data
+     * @param file the file
+     * @return the reader, or null if the file isn't a PNG this class supports
+     * @throws IOException in case the file can't be read
+     */
+    static PngRowReader open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        PngRowReader reader = null;
+        try {
+            reader = readHeader(in);
+        } finally {
+            if (reader == null) in.close();
+        }
+        return reader;
+    }
+
+    private static PngRowReader readHeader(DataInputStream in) throws IOException {
+        if (in.readLong() != SIGNATURE || in.readInt() != HEADER_LENGTH || in.readInt() != IHDR) return null;
+        int width = in.readInt();
+        int height = in.readInt();
+        int bitDepth = in.readUnsignedByte();
+        int colorType = in.readUnsignedByte();
+        int compression = in.readUnsignedByte();
+        int filter = in.readUnsignedByte();
+        int interlace = in.readUnsignedByte();
+        in.readInt(); //the checksum
+
+        byte[] plte = null, trns = null;
+        int length;
+        while (true) {
+            length = in.readInt();
+            int type = in.readInt();
+            if (type == IDAT) break;
+            if (type == PLTE) plte = readChunk(in, length);
+            else if (type == TRNS) trns = readChunk(in, length);
+            else in.skipNBytes(length);
+            in.readInt(); //the checksum
+        }
+
+        boolean isSupported = width > 0 && height > 0 && width <= Integer.MAX_VALUE / Integer.SIZE &&
+                compression == 0 && filter == 0 && interlace == 0 && (
+                (colorType == RGB && bitDepth == 8 && trns == null) ||
+                (colorType == RGBA && bitDepth == 8) ||
+                (colorType == PALETTE && Integer.bitCount(bitDepth) == 1 && bitDepth <= 8 && plte != null));
+        if (!isSupported) return null;
+        int[] palette = colorType == PALETTE ? expandPalette(plte, trns, bitDepth) : null;
+        return new PngRowReader(in, length, width, height, colorType, bitDepth, palette);
+    }
+
+    private static byte[] readChunk(DataInputStream in, int length) throws IOException {
+        byte[] chunk = new byte[length];
+        in.readFully(chunk);
+        return chunk;
+    }
+
+    /**
+     * Builds the ARGB color of every index of a palette image, as ImageIO does: the palette is padded with
+     * black to 2, 4, 16 or 256 entries, then with its last entry to every index of the bit depth, and
+     * entries without a transparency are opaque
+     * @param plte the palette chunk, 3 bytes of RGB per entry
+     * @param trns the transparency chunk, one alpha byte per entry, or null
+     * @param bitDepth the bits of an index
+     * @return the colors
+     */
+    private static int[] expandPalette(byte[] plte, byte[] trns, int bitDepth) {
+        int indices = 1 << bitDepth;
+        int entries = Math.min(plte.length / 3, indices);
+        int paddedEntries = entries > 16 ? 256 : entries > 4 ? 16 : entries > 2 ? 4 : 2;
+        int[] palette = new int[Math.max(paddedEntries, indices)];
+        for (int i = 0; i < paddedEntries; i++) {
+            int alpha = trns != null && i < trns.length ? trns[i] & BYTE_MASK : BYTE_MASK;
+            int rgb = i >= entries ? 0 : (plte[3 * i] & BYTE_MASK) << 16 |
+                    (plte[3 * i + 1] & BYTE_MASK) << 8 | plte[3 * i + 2] & BYTE_MASK;
+            palette[i] = alpha << 24 | rgb;
+        }
+        Arrays.fill(palette, paddedEntries, palette.length, palette[paddedEntries - 1]);
+        return palette;
+    }
+
+    /**
+     * @return the width of the image, in pixels
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the image, in pixels
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the index of the row the next read returns
+     */
+    int getNextRow() {
+        return nextRow;
+    }
+
+    /**
+     * Decodes the next row
+     * @param argb receives the getWidth() packed ARGB pixels of the row
+     * @param offset the index of the first pixel in argb
+     * @throws IOException in case the file is corrupt or ends before the row
+     */
+    void readRow(int[] argb, int offset) throws IOException {
+        skipRow();
+        switch (colorType) {
+            case RGB:
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    argb[offset + x] = OPAQUE | (row[i] & BYTE_MASK) << 16 | (row[i + 1] & BYTE_MASK) << 8 |
+                            row[i + 2] & BYTE_MASK;
+                }
+                break;
+            case RGBA:
+                for (int x = 0, i = 0; x < width; x++, i += 4) {
+                    argb[offset + x] = (row[i + 3] & BYTE_MASK) << 24 | (row[i] & BYTE_MASK) << 16 |
+                            (row[i + 1] & BYTE_MASK) << 8 | row[i + 2] & BYTE_MASK;
+                }
+                break;
+            default:
+                int mask = (1 << bitDepth) - 1;
+                for (int x = 0; x < width; x++) {
+                    int bit = x * bitDepth; //indices are packed from the most significant bit of a byte
+                    int index = row[bit / Byte.SIZE] >> (Byte.SIZE - bitDepth - bit % Byte.SIZE) & mask;
+                    argb[offset + x] = palette[index];
+                }
+        }
+    }
+
+    /**
+     * Decodes the next row without converting it to pixels
+     * @throws IOException in case the file is corrupt or ends before the row
+     */
+    void skipRow() throws IOException {
+        if (nextRow == height) throw new EOFException();
+        byte[] previous = row;
+        row = previousRow;
+        previousRow = previous;
+        int filter = data.readUnsignedByte();
+        data.readFully(row);
+        unfilter(filter);
+        nextRow++;
+    }
+
+    /**
+     * Reverses the filter of the current row, which predicts every byte from the bytes to its left and above
+     * @param filter the filter type of the row
+     * @throws IOException in case the filter type is unknown
+     */
+    private void unfilter(int filter) throws IOException {
+        int bpp = bytesPerPixel;
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = bpp; i < row.length; i++) row[i] += row[i - bpp];
+                break;
+            case 2:
+                for (int i = 0; i < row.length; i++) row[i] += previousRow[i];
+                break;
+            case 3:
+                for (int i = 0; i < row.length; i++) {
+                    int left = i < bpp ? 0 : row[i - bpp] & BYTE_MASK;
+                    row[i] += (left + (previousRow[i] & BYTE_MASK)) >>> 1;
+                }
+                break;
+            case 4:
+                for (int i = 0; i < row.length; i++) {
+                    int left = i < bpp ? 0 : row[i - bpp] & BYTE_MASK;
+                    int up = previousRow[i] & BYTE_MASK;
+                    int upLeft = i < bpp ? 0 : previousRow[i - bpp] & BYTE_MASK;
+                    int estimate = left + up - upLeft;
+                    int leftDistance = Math.abs(estimate - left);
+                    int upDistance = Math.abs(estimate - up);
+                    int upLeftDistance = Math.abs(estimate - upLeft);
+                    if (leftDistance <= upDistance && leftDistance <= upLeftDistance) row[i] += left;
+                    else if (upDistance <= upLeftDistance) row[i] += up;
+                    else row[i] += upLeft;
+                }
+                break;
+            default:
+                throw new IOException(BAD_FILTER_ERR + filter);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+
+    /**
+     * The compressed image data, which PNG splits across consecutive IDAT chunks, as a single stream
+     */
+    private class ImageData extends InputStream {
+        private int remaining; //the bytes left in the current chunk
+        private boolean isDone = false;
+
+        private ImageData(int firstLength) {
+            remaining = firstLength;
+        }
+
+        /**
+         * @return false once the chunks after the image data were reached
+         */
+        private boolean hasData() throws IOException {
+            while (remaining == 0 && !isDone) {
+                file.readInt(); //the checksum
+                remaining = file.readInt();
+                isDone = file.readInt() != IDAT;
+            }
+            return !isDone;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!hasData()) return -1;
+            remaining--;
+            return file.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!hasData()) return -1;
+            int read = file.read(b, off, Math.min(len, remaining));
+            if (read < 0) throw new EOFException();
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+}
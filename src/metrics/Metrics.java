@@ -0,0 +1,164 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The statistics of every stage of the application, collected since startup or since the last reset.
+ * Measure a run of a stage with
+ *     char[][] chars = Metrics.time(Stage.MATCH, () -> match(...));
+ * or, for a stage that runs in parts, with a Span from start or paused. A stage that runs inside another
+ * stage on the same thread, such as glyph rendering while matching, is counted only in the inner stage.
+ * The statistics are registered with the platform MBean server, so they can be read with jconsole or any
+ * other JMX client while the application runs.
+ */
+public final class Metrics {
+    private static final String OBJECT_NAME = "ascii_art:type=Metrics,stage=";
+    private static final String REPORT_HEADER = String.format("%-16s %8s %12s %10s %10s %10s %10s %14s%n",
+            "stage", "count", "total ms", "mean us", "p50 us", "p99 us", "max us", "alloc bytes");
+    private static final String REPORT_ROW = "%-16s %8d %12.1f %10.1f %10d %10d %10d %14d%n";
+    private static final Map<Stage, StageStats> STATS = new EnumMap<>(Stage.class);
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationsBean();
+
+    static {
+        for (Stage stage : Stage.values()) STATS.put(stage, new StageStats(stage));
+        registerMBeans();
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Work that returns a result, measured as one run of a stage
+     * @param <T> the type of the result
+     * @param <E> the type of exception the work may throw
+     */
+    @FunctionalInterface
+    public interface Work<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Work without a result, measured as one run of a stage
+     * @param <E> the type of exception the work may throw
+     */
+    @FunctionalInterface
+    public interface Task<E extends Exception> {
+        void run() throws E;
+    }
+
+    /**
+     * Runs work and records it as one run of a stage, also when the work throws
+     * @param stage the stage
+     * @param work the work
+     * @return the result of the work
+     * @throws E in case the work throws
+     */
+    public static <T, E extends Exception> T time(Stage stage, Work<T, E> work) throws E {
+        Span span = start(stage);
+        try {
+            return work.run();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Runs a task and records it as one run of a stage, also when the task throws
+     * @param stage the stage
+     * @param task the task
+     * @throws E in case the task throws
+     */
+    public static <E extends Exception> void time(Stage stage, Task<E> task) throws E {
+        Span span = start(stage);
+        try {
+            task.run();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Starts measuring a run of a stage
+     * @param stage the stage
+     * @return the running span. closing it records the run
+     */
+    public static Span start(Stage stage) {
+        Span span = new Span(STATS.get(stage));
+        span.resume();
+        return span;
+    }
+
+    /**
+     * Creates a span of a stage that starts out paused, for a stage that runs in parts
+     * @param stage the stage
+     * @return the paused span. resume it to measure a part, close it to record the run
+     */
+    public static Span paused(Stage stage) {
+        return new Span(STATS.get(stage));
+    }
+
+    /**
+     * @param stage a stage
+     * @return the statistics of the stage
+     */
+    public static StageStats get(Stage stage) {
+        return STATS.get(stage);
+    }
+
+    /**
+     * Clears the statistics of all stages
+     */
+    public static void reset() {
+        for (StageStats stats : STATS.values()) stats.reset();
+    }
+
+    /**
+     * @return a table of the statistics of every stage, one stage per line. the time of a stage doesn't
+     * include the stages that ran inside it
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder(REPORT_HEADER);
+        for (StageStats stats : STATS.values()) {
+            report.append(String.format(REPORT_ROW, stats.getStage().getDisplayName(), stats.getCount(),
+                    stats.getTotalMicros() / 1000.0, stats.getMeanMicros(), stats.getP50Micros(),
+                    stats.getP99Micros(), stats.getMaxMicros(), stats.getAllocatedBytes()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * @return the bytes allocated so far by the calling thread, or 0 if the JVM doesn't count them
+     */
+    static long currentThreadAllocatedBytes() {
+        return ALLOCATIONS == null ? 0 : ALLOCATIONS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationsBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported()) return null;
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        return allocations;
+    }
+
+    private static void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (StageStats stats : STATS.values()) {
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME + stats.getStage().getDisplayName());
+                if (!server.isRegistered(name)) server.registerMBean(stats, name);
+            } catch (JMException e) {
+                Logger.getGlobal().warning(
+                        "Failed to register metrics of " + stats.getStage().getDisplayName());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package metrics;
+
+/**
+ * Measures one run of a stage, from Metrics.start until close. A span can be paused and resumed, so a
+ * stage that is interleaved with other work - such as writing rows while they are matched - records only
+ * its own time.
+ * Time is exclusive: while a span runs, the span it interrupted on the same thread is paused, and it is
+ * resumed when the inner span pauses or closes. So glyph rendering that happens while matching counts as
+ * glyph rendering only, and the stages of a report add up to the measured time.
+ * A span is used by one thread at a time. Bytes are counted for the thread that resumes the span.
+ */
+public class Span implements AutoCloseable {
+    //the span whose clock runs on each thread
+    private static final ThreadLocal<Span> RUNNING = new ThreadLocal<>();
+    private final StageStats stats;
+    private long nanos; //measured so far, not including the running part
+    private long bytes;
+    private long resumedNanos; //when the running part started
+    private long resumedBytes;
+    private boolean isRunning = false;
+    private boolean isClosed = false;
+    private Span interrupted; //the span this one paused when it resumed, resumed again when this one pauses
+
+    Span(StageStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Continues measuring after pause, pausing the span that runs on this thread until this one pauses
+     */
+    public void resume() {
+        if (isRunning || isClosed) return;
+        interrupted = RUNNING.get();
+        if (interrupted != null) interrupted.stopClock();
+        RUNNING.set(this);
+        startClock();
+    }
+
+    /**
+     * Stops measuring until resume, without recording the run. The span this one interrupted continues
+     */
+    public void pause() {
+        if (!isRunning) return;
+        stopClock();
+        if (interrupted == null) RUNNING.remove();
+        else {
+            RUNNING.set(interrupted);
+            interrupted.startClock();
+            interrupted = null;
+        }
+    }
+
+    /**
+     * Stops measuring and records the run. Closing a span again does nothing.
+     */
+    @Override
+    public void close() {
+        if (isClosed) return;
+        pause();
+        isClosed = true;
+        stats.record(nanos, bytes);
+    }
+
+    private void startClock() {
+        isRunning = true;
+        resumedBytes = Metrics.currentThreadAllocatedBytes();
+        resumedNanos = System.nanoTime();
+    }
+
+    private void stopClock() {
+        nanos += System.nanoTime() - resumedNanos;
+        bytes += Metrics.currentThreadAllocatedBytes() - resumedBytes;
+        isRunning = false;
+    }
+}
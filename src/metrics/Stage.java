@@ -0,0 +1,33 @@
+package metrics;
+
+/**
+ * The measured stages of converting an image to ascii art
+ */
+public enum Stage {
+    /** reading image files, bands of an image or frames of an animation into pixels */
+    DECODE("decode"),
+    /** computing the brightness of every sub-image, and its mean color for colored output */
+    TILE_BRIGHTNESS("tile-brightness"),
+    /** drawing a char of a font that was not drawn before. happens within the match that needed it */
+    GLYPH_RASTERIZATION("glyph"),
+    /**
+     * choosing a char for every sub-image, including building the palette of the charset. the streaming and
+     * animation matchers compute the brightness of a sub-image as they match it, so there it is counted here
+     */
+    MATCH("match"),
+    /** writing the chars to a file or to the console */
+    OUTPUT("output");
+
+    private final String displayName;
+
+    Stage(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the name of the stage in reports and in JMX
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
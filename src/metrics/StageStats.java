@@ -0,0 +1,122 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of one stage. Recording is lock free and allocates nothing, so any number of threads
+ * record at once.
+ * Times are kept in a histogram with a bucket for every power of two nanoseconds, so percentiles are
+ * reported as the upper bound of their bucket.
+ */
+public class StageStats implements StageStatsMXBean {
+    private static final int BUCKETS = Long.SIZE;
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+
+    private final Stage stage;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS); //runs per bit length of nanos
+
+    StageStats(Stage stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * @return the stage of the statistics
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * Records one run of the stage
+     * @param nanos the time of the run
+     * @param bytes the bytes allocated during the run, or 0 if unknown
+     */
+    void record(long nanos, long bytes) {
+        nanos = Math.max(nanos, 0);
+        count.increment();
+        totalNanos.add(nanos);
+        allocatedBytes.add(Math.max(bytes, 0));
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        histogram.incrementAndGet(Math.max(BUCKETS - 1 - Long.numberOfLeadingZeros(nanos), 0));
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getTotalMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(totalNanos.sum());
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long runs = count.sum();
+        return runs == 0 ? 0 : totalNanos.sum() / (runs * 1000.0);
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    @Override
+    public long getP50Micros() {
+        return percentileMicros(P50);
+    }
+
+    @Override
+    public long getP99Micros() {
+        return percentileMicros(P99);
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        allocatedBytes.reset();
+        maxNanos.set(0);
+        for (int i = 0; i < BUCKETS; i++) histogram.set(i, 0);
+    }
+
+    /**
+     * @param fraction the fraction of runs that are at most the percentile, between 0-1
+     * @return the upper bound of the histogram bucket holding the percentile, in microseconds, capped by
+     * the longest run
+     */
+    private long percentileMicros(double fraction) {
+        long[] runs = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            runs[i] = histogram.get(i);
+            total += runs[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += runs[i];
+            if (seen >= rank) {
+                //bucket i holds 2^i to 2^(i+1)-1 nanos, the last bucket reaches Long.MAX_VALUE
+                long upperNanos = i >= BUCKETS - 2 ? Long.MAX_VALUE : (2L << i) - 1;
+                return TimeUnit.NANOSECONDS.toMicros(Math.min(upperNanos, maxNanos.get()));
+            }
+        }
+        return getMaxMicros();
+    }
+}
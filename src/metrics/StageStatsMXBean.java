@@ -0,0 +1,47 @@
+package metrics;
+
+/**
+ * The statistics of one stage, as exposed through JMX under ascii_art:type=Metrics,stage=&lt;stage&gt;
+ */
+public interface StageStatsMXBean {
+    /**
+     * @return the number of times the stage ran
+     */
+    long getCount();
+
+    /**
+     * @return the total time spent in the stage, in microseconds
+     */
+    long getTotalMicros();
+
+    /**
+     * @return the mean time of a run of the stage, in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * @return the longest run of the stage, in microseconds
+     */
+    long getMaxMicros();
+
+    /**
+     * @return the median time of a run of the stage, in microseconds, accurate to a factor of two
+     */
+    long getP50Micros();
+
+    /**
+     * @return the 99th percentile of the time of a run of the stage, in microseconds, accurate to a
+     * factor of two
+     */
+    long getP99Micros();
+
+    /**
+     * @return the total bytes allocated by the threads that ran the stage, while they ran it
+     */
+    long getAllocatedBytes();
+
+    /**
+     * Clears the statistics of the stage
+     */
+    void reset();
+}
@@ -0,0 +1,5 @@
+/**
+ * Lightweight counters, latency histograms and allocation totals of the conversion stages, reported as
+ * text and through JMX.
+ */
+package metrics;
@@ -0,0 +1,69 @@
+package image;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A package-private class of the package image.
+ * The luminance kernel on SIMD lanes of the incubating Vector API. Each lane extracts the channels of a
+ * pixel with shifts and masks and weighs them in fixed point, exactly like Luminance.of, so the results
+ * equal those of the scalar kernel. Loaded reflectively by LuminanceKernel, since this source root needs
+ * --add-modules jdk.incubator.vector both to compile and to run.
+ */
+class VectorLuminanceKernel extends LuminanceKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    //lanes are summed as ints, so a partial sum of all lanes is reduced to a long before this many pixels
+    private static final int PIXELS_PER_REDUCTION =
+            Integer.MAX_VALUE / Luminance.MAX_LUMINANCE / SPECIES.length() * SPECIES.length();
+
+    /**
+     * Constructor. Fails with a LinkageError if the vector module is not available
+     */
+    VectorLuminanceKernel() {
+        IntVector.zero(SPECIES);
+    }
+
+    @Override
+    void toLuminance(int[] argb, int offset, int[] luminance, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            luminanceOf(IntVector.fromArray(SPECIES, argb, offset + i)).intoArray(luminance, i);
+        }
+        for (; i < length; i++) luminance[i] = Luminance.of(argb[offset + i]);
+    }
+
+    @Override
+    long sum(int[] argb, int offset, int length) {
+        long sum = 0;
+        int i = 0, bound = SPECIES.loopBound(length);
+        while (i < bound) {
+            IntVector partialSum = IntVector.zero(SPECIES);
+            for (int end = Math.min(bound, i + PIXELS_PER_REDUCTION); i < end; i += SPECIES.length()) {
+                partialSum = partialSum.add(luminanceOf(IntVector.fromArray(SPECIES, argb, offset + i)));
+            }
+            sum += partialSum.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) sum += Luminance.of(argb[offset + i]);
+        return sum;
+    }
+
+    @Override
+    String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    /**
+     * Computes the fixed point luminance of pixels, lane by lane
+     * @param argb packed ARGB pixels
+     * @return the luminance of the pixels
+     */
+    private static IntVector luminanceOf(IntVector argb) {
+        IntVector red = argb.lanewise(VectorOperators.LSHR, 16).and(Luminance.MAX_RGB);
+        IntVector green = argb.lanewise(VectorOperators.LSHR, 8).and(Luminance.MAX_RGB);
+        IntVector blue = argb.and(Luminance.MAX_RGB);
+        return red.mul(Luminance.WEIGHT_RED)
+                .add(green.mul(Luminance.WEIGHT_GREEN))
+                .add(blue.mul(Luminance.WEIGHT_BLUE));
+    }
+}
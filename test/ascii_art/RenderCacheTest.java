@@ -0,0 +1,55 @@
+package ascii_art;
+
+import java.util.List;
+
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests of RenderCache: its keys and its least-recently-used eviction by bytes
+ */
+public class RenderCacheTest {
+    //a render of one row of 4 chars takes 4 chars of 2 bytes and the 16 bytes of the row's header
+    private static final long RENDER_BYTES = 24;
+
+    public static void testKeyDoesNotDependOnTheOrderOfTheChars() {
+        assertEquals(RenderCache.keyOf(8, List.of('c', 'a', 'b')),
+                RenderCache.keyOf(8, List.of('a', 'b', 'c')), "keys of the same chars");
+        assertTrue(!RenderCache.keyOf(8, List.of('a')).equals(RenderCache.keyOf(16, List.of('a'))),
+                "keys of different resolutions differ");
+    }
+
+    public static void testLeastRecentlyUsedRenderIsEvicted() {
+        RenderCache cache = new RenderCache(3 * RENDER_BYTES);
+        cache.put("a", render('a'));
+        cache.put("b", render('b'));
+        cache.put("c", render('c'));
+        cache.get("a"); //now b is the least recently used
+        cache.put("d", render('d'));
+        assertTrue(cache.get("b") == null, "b was evicted");
+        for (String key : List.of("a", "c", "d")) {
+            assertEquals(key.charAt(0), cache.get(key)[0][0], "render of " + key);
+        }
+    }
+
+    public static void testReplacedRenderFreesItsBytes() {
+        RenderCache cache = new RenderCache(2 * RENDER_BYTES);
+        cache.put("a", render('a'));
+        cache.put("b", render('b'));
+        cache.put("b", render('c'));
+        assertEquals('a', cache.get("a")[0][0], "render of a");
+        assertEquals('c', cache.get("b")[0][0], "replaced render of b");
+    }
+
+    public static void testRenderLargerThanTheBudgetIsNotCached() {
+        RenderCache cache = new RenderCache(RENDER_BYTES);
+        cache.put("a", render('a'));
+        cache.put("large", new char[][]{new char[4], new char[4]});
+        assertTrue(cache.get("large") == null, "the large render isn't cached");
+        assertEquals('a', cache.get("a")[0][0], "render of a is kept");
+    }
+
+    private static char[][] render(char c) {
+        return new char[][]{{c, c, c, c}};
+    }
+}
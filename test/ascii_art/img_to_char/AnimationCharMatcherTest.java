@@ -0,0 +1,107 @@
+package ascii_art.img_to_char;
+
+import ascii_output.BinaryAsciiOutput;
+import image.FrameReader;
+import image.Image;
+import testing.TestImages;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests that AnimationCharMatcher matches every frame, and that a frame that fails to decode ends the
+ * matching with the exception of the decoding instead of leaving the matcher waiting for frames
+ */
+public class AnimationCharMatcherTest {
+    private static final String FONT = "Courier New";
+    private static final Character[] DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final int CHARS_IN_ROW = 8;
+    private static final int FRAMES = 3;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    public static void testEveryFrameIsMatched() throws Exception {
+        File dir = writeFrames(-1);
+        try (FrameReader reader = new FrameReader(dir.getPath())) {
+            assertEquals(FRAMES, match(reader), "number of frames");
+        }
+    }
+
+    public static void testCorruptFrameFileEndsWithAnIOException() throws Exception {
+        File dir = writeFrames(1);
+        try (FrameReader reader = new FrameReader(dir.getPath())) {
+            match(reader);
+            throw new AssertionError("matched an animation with a corrupt frame");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException, "an IOException, not " + e.getCause());
+        }
+    }
+
+    public static void testUncheckedDecodeFailureEndsWithItsException() throws Exception {
+        File dir = writeFrames(-1);
+        IllegalArgumentException failure = new IllegalArgumentException("malformed frame metadata");
+        FrameReader reader = new FrameReader(dir.getPath()) {
+            private int frames = 0;
+
+            @Override
+            public boolean readFrame(Image frame) throws IOException {
+                if (++frames == 2) throw failure;
+                return super.readFrame(frame);
+            }
+        };
+        try (reader) {
+            match(reader);
+            throw new AssertionError("matched an animation whose decoding failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() == failure, "the exception of the decoding, not " + e.getCause());
+        }
+    }
+
+    /**
+     * Matches an animation on another thread, failing the test if the matching doesn't end in time
+     * @param reader the reader of the animation
+     * @return the number of frames
+     * @throws ExecutionException wraps the exception the matching ended with
+     */
+    private static int match(FrameReader reader) throws Exception {
+        Callable<Integer> matching = () -> new AnimationCharMatcher(FONT, 0).chooseChars(reader, CHARS_IN_ROW,
+                DIGITS, frame -> new BinaryAsciiOutput(new ByteArrayOutputStream()));
+        FutureTask<Integer> task = new FutureTask<>(matching);
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            return task.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            thread.interrupt();
+            throw new AssertionError("the matching didn't end");
+        }
+    }
+
+    /**
+     * Writes a directory of numbered frames, which is deleted when the tests end
+     * @param corruptFrame the index of a frame whose file isn't an image, or -1 for none
+     * @return the directory
+     */
+    private static File writeFrames(int corruptFrame) throws IOException {
+        File dir = Files.createTempDirectory("test_frames").toFile();
+        dir.deleteOnExit();
+        for (int i = 0; i < FRAMES; i++) {
+            File frame = new File(dir, "frame_" + i + ".png");
+            frame.deleteOnExit();
+            if (i == corruptFrame) Files.write(frame.toPath(), new byte[]{1, 2, 3});
+            else ImageIO.write(TestImages.noisePixels(64, 48, i), "png", frame);
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,100 @@
+package ascii_art.img_to_char;
+
+import java.util.Random;
+
+import static testing.Assert.assertArrayEquals;
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests of CharPalette: the closest char, its tie breaking and the ranges where two palettes differ
+ */
+public class CharPaletteTest {
+    private static final int RANDOM_PALETTES = 200;
+    private static final int SAMPLES = 1000;
+    private static final long SEED = 7;
+
+    public static void testClosestCharIsNearestBrightness() {
+        CharPalette palette = new CharPalette(new Character[]{'a', 'b', 'c'}, new float[]{0.2f, 0.4f, 1});
+        //normalized, a is 0, b is 0.25 and c is 1
+        assertEquals('a', palette.closestChar(0.1f), "closest to 0.1");
+        assertEquals('b', palette.closestChar(0.25f), "closest to 0.25");
+        assertEquals('b', palette.closestChar(0.6f), "closest to 0.6");
+        assertEquals('c', palette.closestChar(0.7f), "closest to 0.7");
+    }
+
+    public static void testBrightnessOutsideThePaletteGetsTheNearestEnd() {
+        CharPalette palette = new CharPalette(new Character[]{'a', 'b'}, new float[]{0.3f, 0.6f});
+        assertEquals('a', palette.closestChar(-1), "closest to -1");
+        assertEquals('b', palette.closestChar(2), "closest to 2");
+    }
+
+    public static void testTieBetweenNeighboursGoesToTheSmallerChar() {
+        CharPalette darkerIsSmaller = new CharPalette(new Character[]{'x', 'y'}, new float[]{0, 1});
+        CharPalette brighterIsSmaller = new CharPalette(new Character[]{'x', 'y'}, new float[]{1, 0});
+        assertEquals('x', darkerIsSmaller.closestChar(0.5f), "tie with the darker char smaller");
+        assertEquals('x', brighterIsSmaller.closestChar(0.5f), "tie with the brighter char smaller");
+    }
+
+    public static void testEquallyBrightCharsKeepTheSmallest() {
+        CharPalette palette = new CharPalette(new Character[]{'q', 'z', 'b', 'k'},
+                new float[]{0.5f, 0.1f, 0.5f, 0.5f});
+        assertEquals('b', palette.closestChar(1), "brightest of q, b and k");
+        assertEquals('z', palette.closestChar(0), "darkest");
+    }
+
+    public static void testEquallyBrightPaletteIsLeftAtZero() {
+        CharPalette palette = new CharPalette(new Character[]{'m', 'c'}, new float[]{0.4f, 0.4f});
+        assertEquals('c', palette.closestChar(0), "closest to 0");
+        assertEquals('c', palette.closestChar(1), "closest to 1");
+    }
+
+    public static void testEmptyPaletteChoosesSpace() {
+        assertEquals(' ', new CharPalette(new Character[0], new float[0]).closestChar(0.5f), "empty palette");
+    }
+
+    public static void testSamePaletteDiffersNowhere() {
+        Character[] chars = {'a', 'b', 'c'};
+        float[] brightness = {0.1f, 0.5f, 0.7f};
+        CharPalette palette = new CharPalette(chars, brightness);
+        assertArrayEquals(new float[0], palette.differingRanges(new CharPalette(chars, brightness)),
+                "ranges of equal palettes");
+    }
+
+    public static void testPalettesAgreeOutsideTheirDifferingRanges() {
+        Random random = new Random(SEED);
+        for (int p = 0; p < RANDOM_PALETTES; p++) {
+            CharPalette first = randomPalette(random);
+            CharPalette second = randomPalette(random);
+            float[] ranges = first.differingRanges(second);
+            for (int i = 0; i + 2 < ranges.length; i += 2) {
+                assertTrue(ranges[i] <= ranges[i + 1] && ranges[i + 1] < ranges[i + 2],
+                        "ranges are sorted and disjoint");
+            }
+            for (int s = 0; s <= SAMPLES; s++) {
+                float brightness = s / (float) SAMPLES;
+                if (isInRanges(brightness, ranges)) continue;
+                assertEquals(first.closestChar(brightness), second.closestChar(brightness),
+                        "chars of both palettes at " + brightness);
+            }
+        }
+    }
+
+    private static CharPalette randomPalette(Random random) {
+        int size = 1 + random.nextInt(6);
+        Character[] chars = new Character[size];
+        float[] brightness = new float[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + random.nextInt(8));
+            brightness[i] = random.nextInt(5) / 4f; //few values, so some chars are equally bright
+        }
+        return new CharPalette(chars, brightness);
+    }
+
+    private static boolean isInRanges(float brightness, float[] ranges) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (brightness >= ranges[i] && brightness <= ranges[i + 1]) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+import testing.TestImages;
+
+import static testing.Assert.assertArrayEquals;
+
+/**
+ * Tests that the matchers choose exactly the same chars and colors on all cores as on the calling thread
+ */
+public class ParallelMatchingTest {
+    private static final String FONT = "Courier New";
+    private static final int[] RESOLUTIONS = {1, 7, 64, 101};
+    private static final Character[] DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final Character[] LETTERS = {'a', 'k', 'm', 'w', 'x', '.'};
+
+    public static void testBrightnessMatchingInParallelEqualsSequential() {
+        Image image = TestImages.noise(203, 157, 1);
+        BrightnessImgCharMatcher sequential = new BrightnessImgCharMatcher(image, FONT);
+        BrightnessImgCharMatcher parallel = new BrightnessImgCharMatcher(image, FONT);
+        parallel.setParallel(true);
+        for (int charsInRow : RESOLUTIONS) {
+            //the second char set is matched incrementally, from the chars of the first
+            for (Character[] charSet : new Character[][]{DIGITS, LETTERS}) {
+                assertArrayEquals(sequential.chooseChars(charsInRow, charSet),
+                        parallel.chooseChars(charsInRow, charSet), "chars at " + charsInRow + " in a row");
+            }
+            assertArrayEquals(sequential.chooseColors(charsInRow), parallel.chooseColors(charsInRow),
+                    "colors at " + charsInRow + " in a row");
+        }
+    }
+
+    public static void testShapeMatchingInParallelEqualsSequential() {
+        Image image = TestImages.noise(203, 157, 2);
+        ShapeImgCharMatcher sequential = new ShapeImgCharMatcher(image, FONT);
+        ShapeImgCharMatcher parallel = new ShapeImgCharMatcher(image, FONT);
+        parallel.setParallel(true);
+        for (int charsInRow : RESOLUTIONS) {
+            for (Character[] charSet : new Character[][]{DIGITS, LETTERS}) {
+                assertArrayEquals(sequential.chooseChars(charsInRow, charSet),
+                        parallel.chooseChars(charsInRow, charSet), "chars at " + charsInRow + " in a row");
+            }
+        }
+    }
+
+    public static void testIncrementalMatchingEqualsFreshMatching() {
+        Image image = TestImages.noise(203, 157, 3);
+        BrightnessImgCharMatcher incremental = new BrightnessImgCharMatcher(image, FONT);
+        incremental.setParallel(true);
+        for (int charsInRow : RESOLUTIONS) {
+            incremental.chooseChars(charsInRow, DIGITS);
+            assertArrayEquals(new BrightnessImgCharMatcher(image, FONT).chooseChars(charsInRow, LETTERS),
+                    incremental.chooseChars(charsInRow, LETTERS), "chars at " + charsInRow + " in a row");
+        }
+    }
+}
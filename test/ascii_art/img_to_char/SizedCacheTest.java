@@ -0,0 +1,37 @@
+package ascii_art.img_to_char;
+
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests of SizedCache: its least-recently-used eviction by bytes and the value putIfAbsent returns
+ */
+public class SizedCacheTest {
+    public static void testLeastRecentlyUsedValueIsEvicted() {
+        SizedCache<Integer, String> cache = new SizedCache<>(9, String::length);
+        cache.putIfAbsent(1, "aaa");
+        cache.putIfAbsent(2, "bbb");
+        cache.putIfAbsent(3, "ccc");
+        cache.get(1); //now 2 is the least recently used
+        cache.putIfAbsent(4, "dd");
+        assertTrue(cache.get(2) == null, "2 was evicted");
+        assertEquals("aaa", cache.get(1), "value of 1");
+        assertEquals("ccc", cache.get(3), "value of 3");
+        assertEquals("dd", cache.get(4), "value of 4");
+    }
+
+    public static void testFirstValueOfAKeyWins() {
+        SizedCache<Integer, String> cache = new SizedCache<>(9, String::length);
+        assertEquals("first", cache.putIfAbsent(1, "first"), "value put first");
+        assertEquals("first", cache.putIfAbsent(1, "second"), "value put second");
+        assertEquals("first", cache.get(1), "cached value");
+    }
+
+    public static void testValueLargerThanTheBudgetIsReturnedButNotCached() {
+        SizedCache<Integer, String> cache = new SizedCache<>(4, String::length);
+        cache.putIfAbsent(1, "aaaa");
+        assertEquals("large", cache.putIfAbsent(2, "large"), "returned value");
+        assertTrue(cache.get(2) == null, "the large value isn't cached");
+        assertEquals("aaaa", cache.get(1), "value of 1 is kept");
+    }
+}
@@ -0,0 +1,41 @@
+package ascii_art.img_to_char;
+
+import ascii_output.BinaryAsciiInput;
+import ascii_output.BinaryAsciiOutput;
+import image.Image;
+import image.ImageBandReader;
+import testing.TestImages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static testing.Assert.assertArrayEquals;
+
+/**
+ * Tests that StreamingImgCharMatcher chooses exactly the chars BrightnessImgCharMatcher chooses
+ */
+public class StreamingMatchingTest {
+    private static final String FONT = "Courier New";
+    private static final int[] RESOLUTIONS = {1, 7, 64, 101};
+    private static final Character[] DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+
+    public static void testStreamingEqualsBrightnessMatching() throws IOException {
+        for (String format : new String[]{"png", "jpg"}) {
+            File file = TestImages.write(TestImages.noisePixels(203, 157, 4), format);
+            Image image = Image.fromFile(file.getPath());
+            for (int charsInRow : RESOLUTIONS) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ImageBandReader reader = new ImageBandReader(file.getPath())) {
+                    new StreamingImgCharMatcher(FONT).chooseChars(reader, charsInRow, DIGITS,
+                            new BinaryAsciiOutput(bytes));
+                }
+                ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+                BinaryAsciiInput streamed = new BinaryAsciiInput(in);
+                assertArrayEquals(new BrightnessImgCharMatcher(image, FONT).chooseChars(charsInRow, DIGITS),
+                        streamed.getChars(), format + " at " + charsInRow + " in a row");
+            }
+        }
+    }
+}
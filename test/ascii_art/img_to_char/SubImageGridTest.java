@@ -0,0 +1,110 @@
+package ascii_art.img_to_char;
+
+import image.Image;
+
+import java.awt.Color;
+import java.util.function.IntUnaryOperator;
+
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests of SubImageGrid at the edges: images that don't divide into the chars, extreme aspect ratios and
+ * sizes, and bands of an image
+ */
+public class SubImageGridTest {
+    private static final int[][] SIZES = { //width, height, chars in row
+            {203, 157, 64}, {203, 157, 203}, {100, 100, 1}, {1000, 1, 10}, {1, 1000, 1}, {7, 3, 7},
+            {999, 1001, 333}
+    };
+
+    public static void testGridCoversTheImageWithNearlyEqualSubImages() {
+        for (int[] size : SIZES) {
+            SubImageGrid grid = new SubImageGrid(size[0], size[1], size[2]);
+            String name = size[0] + "x" + size[1] + " at " + size[2];
+            assertEquals(size[2], grid.getCols(), "columns of " + name);
+            assertEquals(0, grid.rowStart(0), "first row of " + name);
+            assertEquals(size[1], grid.rowStart(grid.getRows()), "end of the rows of " + name);
+            assertEquals(0, grid.colStart(0), "first column of " + name);
+            assertEquals(size[0], grid.colStart(grid.getCols()), "end of the columns of " + name);
+            checkSpread(grid.getRows(), grid::rowStart, size[1], "rows of " + name);
+            checkSpread(grid.getCols(), grid::colStart, size[0], "columns of " + name);
+        }
+    }
+
+    public static void testRowsKeepTheAspectRatio() {
+        assertEquals(49, new SubImageGrid(203, 157, 64).getRows(), "rows of 203x157 at 64");
+        assertEquals(1, new SubImageGrid(1000, 1, 10).getRows(), "rows of a single pixel row");
+        assertEquals(1000, new SubImageGrid(1, 1000, 1).getRows(), "rows of a single pixel column");
+        assertEquals(1, new SubImageGrid(100, 10, 1).getRows(), "rows of a wide image at one char");
+    }
+
+    public static void testHugeImagesDoNotOverflow() {
+        SubImageGrid grid = new SubImageGrid(100_000, 80_000, 50_000);
+        assertEquals(40_000, grid.getRows(), "rows");
+        assertEquals(80_000, grid.rowStart(grid.getRows()), "end of the rows");
+        assertEquals(100_000, grid.colStart(grid.getCols()), "end of the columns");
+    }
+
+    public static void testBandGivesTheBrightnessOfTheWholeImage() {
+        SubImageGrid grid = new SubImageGrid(45, 38, 9);
+        Image whole = new RowImage(45, 38, 0);
+        for (int row = 0; row < grid.getRows(); row++) {
+            int bandTop = grid.rowStart(row);
+            Image band = new RowImage(45, grid.rowStart(row + 1) - bandTop, bandTop);
+            for (int col = 0; col < grid.getCols(); col++) {
+                assertEquals(grid.brightness(whole, 0, row, col), grid.brightness(band, bandTop, row, col),
+                        "brightness of " + row + ", " + col);
+                assertEquals(grid.color(whole, 0, row, col), grid.color(band, bandTop, row, col),
+                        "color of " + row + ", " + col);
+            }
+        }
+    }
+
+    /**
+     * Checks that consecutive starts are all floor or ceiling of total / count apart
+     * @param count the number of rows or columns
+     * @param start the first pixel of each row or column
+     * @param total the pixels of all rows or columns together
+     * @param name describes the rows or columns
+     */
+    private static void checkSpread(int count, IntUnaryOperator start, int total,
+                                    String name) {
+        for (int i = 0; i < count; i++) {
+            int size = start.applyAsInt(i + 1) - start.applyAsInt(i);
+            assertTrue(size == total / count || size == (total + count - 1) / count,
+                    name + ": size " + size + " of " + i);
+        }
+    }
+
+    /**
+     * An image, or a band of one, whose pixels encode their position in the whole image
+     */
+    private static class RowImage implements Image {
+        private final int width;
+        private final int height;
+        private final int upperRow; //the row of the whole image where this one starts
+
+        private RowImage(int width, int height, int upperRow) {
+            this.width = width;
+            this.height = height;
+            this.upperRow = upperRow;
+        }
+
+        @Override
+        public Color getPixel(int x, int y) {
+            int row = upperRow + x;
+            return new Color(row * 5 % 256, y * 7 % 256, (row * y) % 256);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ascii_output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static testing.Assert.assertArrayEquals;
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests that BinaryAsciiInput reads back exactly what BinaryAsciiOutput wrote
+ */
+public class BinaryAsciiRoundTripTest {
+    //distinct chars of 1 to 9 bits per index, including sizes that aren't powers of 2
+    private static final int[] TABLE_SIZES = {1, 2, 3, 17, 300};
+    private static final long SEED = 11;
+
+    public static void testCharsRoundTripForEveryIndexWidth() throws IOException {
+        Random random = new Random(SEED);
+        for (int tableSize : TABLE_SIZES) {
+            char[][] chars = randomChars(random, 37, 11, tableSize); //37 * 11 indices don't fill whole bytes
+            BinaryAsciiInput input = roundTrip(chars, null);
+            assertArrayEquals(chars, input.getChars(), "chars of a table of " + tableSize);
+            assertTrue(input.getColors() == null, "no colors");
+        }
+    }
+
+    public static void testColorsRoundTrip() throws IOException {
+        Random random = new Random(SEED);
+        char[][] chars = randomChars(random, 5, 9, 4);
+        int[][] colors = new int[9][5];
+        for (int[] row : colors) {
+            for (int col = 0; col < row.length; col++) row[col] = random.nextInt(1 << 24);
+        }
+        BinaryAsciiInput input = roundTrip(chars, colors);
+        assertArrayEquals(chars, input.getChars(), "chars");
+        assertArrayEquals(colors, input.getColors(), "colors");
+    }
+
+    public static void testRowsWithoutColorAreBlack() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryAsciiOutput output = new BinaryAsciiOutput(bytes);
+        output.begin(2);
+        output.writeRow(new char[]{'a', 'b'});
+        output.writeRow(new char[]{'c', 'd'}, new int[]{0x123456, 0xABCDEF});
+        output.writeRow(new char[]{'e', 'f'});
+        output.end();
+        BinaryAsciiInput input = new BinaryAsciiInput(new ByteArrayInputStream(bytes.toByteArray()));
+        assertArrayEquals(new char[][]{{'a', 'b'}, {'c', 'd'}, {'e', 'f'}}, input.getChars(), "chars");
+        assertArrayEquals(new int[][]{{0, 0}, {0x123456, 0xABCDEF}, {0, 0}}, input.getColors(), "colors");
+    }
+
+    public static void testEmptyImageRoundTrips() throws IOException {
+        assertArrayEquals(new char[0][], roundTrip(new char[0][], null).getChars(), "chars");
+    }
+
+    public static void testOutputCanBeReused() throws IOException {
+        char[][] chars = {{'a'}, {'b'}};
+        File file = File.createTempFile("round_trip", ".bin");
+        try {
+            BinaryAsciiOutput output = new BinaryAsciiOutput(file.getPath());
+            output.output(new char[][]{{'x', 'y', 'z'}});
+            output.output(chars);
+            assertArrayEquals(chars, new BinaryAsciiInput(file.getPath()).getChars(),
+                    "chars of the second image");
+        } finally {
+            file.delete();
+        }
+    }
+
+    public static void testCompressedFileRoundTrips() throws IOException {
+        char[][] chars = randomChars(new Random(SEED), 31, 17, 10);
+        File file = File.createTempFile("round_trip", ".bin.gz");
+        try {
+            AsciiOutput.toFile("bin.gz", file.getPath(), null).output(chars);
+            assertArrayEquals(chars, new BinaryAsciiInput(file.getPath()).getChars(), "chars");
+        } finally {
+            file.delete();
+        }
+    }
+
+    public static void testOtherBytesAreRejected() {
+        try {
+            new BinaryAsciiInput(new ByteArrayInputStream("not an image".getBytes()));
+            throw new AssertionError("read an image from other bytes");
+        } catch (IOException e) {
+            assertEquals("Not a binary ascii image", e.getMessage(), "error");
+        }
+    }
+
+    private static BinaryAsciiInput roundTrip(char[][] chars, int[][] colors) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryAsciiOutput(bytes).output(chars, colors);
+        return new BinaryAsciiInput(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    /**
+     * @param random the source of the chars
+     * @param charsInRow the number of chars in a row
+     * @param rows the number of rows, enough to hold tableSize chars
+     * @param tableSize the number of distinct chars
+     * @return rows of random chars that use exactly tableSize distinct chars
+     */
+    private static char[][] randomChars(Random random, int charsInRow, int rows, int tableSize) {
+        char[][] chars = new char[rows][charsInRow];
+        for (int i = 0; i < rows * charsInRow; i++) {
+            int index = i < tableSize ? i : random.nextInt(tableSize);
+            chars[i / charsInRow][i % charsInRow] = (char) ('!' + index);
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,65 @@
+package ascii_output;
+
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests of ColorRuns: which chars start a run and the color each run keeps
+ */
+public class ColorRunsTest {
+    public static void testFirstVisibleCharStartsARun() {
+        ColorRuns runs = new ColorRuns(ColorRuns.DEFAULT_THRESHOLD);
+        assertTrue(!runs.isInRun(), "no run before the first char");
+        assertTrue(runs.startsRun('a', 0x102030), "the first char starts a run");
+        assertTrue(runs.isInRun(), "in a run after the first char");
+        assertEquals(0x102030, runs.getColor(), "color of the run");
+    }
+
+    public static void testCharsWithinTheThresholdOfEveryChannelJoinTheRun() {
+        ColorRuns runs = new ColorRuns(10);
+        runs.startsRun('a', 0x808080);
+        assertTrue(!runs.startsRun('b', 0x8A7680), "every channel within the threshold");
+        assertTrue(runs.startsRun('c', 0x80808B), "blue beyond the threshold");
+        assertEquals(0x80808B, runs.getColor(), "color of the new run");
+    }
+
+    public static void testRunKeepsTheColorOfItsFirstChar() {
+        //each char is within the threshold of the one before it, but not of the first char of the run
+        ColorRuns runs = new ColorRuns(10);
+        runs.startsRun('a', 0x000000);
+        assertTrue(!runs.startsRun('b', 0x080000), "red 8 from the run");
+        assertTrue(runs.startsRun('c', 0x100000), "red 16 from the run");
+        assertEquals(0x100000, runs.getColor(), "color of the new run");
+    }
+
+    public static void testZeroThresholdMergesOnlyEqualColors() {
+        ColorRuns runs = new ColorRuns(0);
+        runs.startsRun('a', 0x123456);
+        assertTrue(!runs.startsRun('b', 0x123456), "an equal color");
+        assertTrue(runs.startsRun('c', 0x123457), "a color that differs by one");
+    }
+
+    public static void testWhitespaceNeverStartsARun() {
+        ColorRuns runs = new ColorRuns(0);
+        assertTrue(!runs.startsRun(' ', 0xFF0000), "a space before any run");
+        assertTrue(!runs.isInRun(), "no run after a space");
+        runs.startsRun('a', 0x00FF00);
+        assertTrue(!runs.startsRun('\t', 0x0000FF), "a tab within a run");
+        assertEquals(0x00FF00, runs.getColor(), "the run keeps its color");
+    }
+
+    public static void testAlphaIsIgnored() {
+        ColorRuns runs = new ColorRuns(0);
+        runs.startsRun('a', 0xFF112233);
+        assertEquals(0x112233, runs.getColor(), "color of the run");
+        assertTrue(!runs.startsRun('b', 0x00112233), "the same color with another alpha");
+    }
+
+    public static void testResetEndsTheRun() {
+        ColorRuns runs = new ColorRuns(ColorRuns.DEFAULT_THRESHOLD);
+        runs.startsRun('a', 0x102030);
+        runs.reset();
+        assertTrue(!runs.isInRun(), "no run after a reset");
+        assertTrue(runs.startsRun('b', 0x102030), "the same color starts a new run");
+    }
+}
@@ -0,0 +1,107 @@
+package image;
+
+import testing.TestImages;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static testing.Assert.assertEquals;
+import static testing.Assert.assertTrue;
+
+/**
+ * Tests that ImageBandReader reads the pixels ImageIO decodes, whether it streams the file a row at a time
+ * or not
+ */
+public class ImageBandReaderTest {
+    private static final int WIDTH = 101;
+    private static final int HEIGHT = 67;
+    private static final long SEED = 5;
+
+    public static void testRgbAndRgbaPngsAreStreamed() throws IOException {
+        BufferedImage rgba = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(SEED);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) rgba.setRGB(x, y, random.nextInt());
+        }
+        checkBands(TestImages.write(TestImages.noisePixels(WIDTH, HEIGHT, SEED), "png"), true);
+        checkBands(TestImages.write(rgba, "png"), true);
+    }
+
+    public static void testPalettePngsOfEveryBitDepthAreStreamed() throws IOException {
+        Random random = new Random(SEED);
+        for (int bits : new int[]{1, 2, 4, 8}) {
+            //palettes that fill all of the indices and palettes that don't
+            for (int entries : new int[]{2, 3, 1 << bits}) {
+                if (entries > 1 << bits) continue;
+                byte[] red = new byte[entries], green = new byte[entries], blue = new byte[entries];
+                byte[] alpha = new byte[entries];
+                random.nextBytes(red);
+                random.nextBytes(green);
+                random.nextBytes(blue);
+                random.nextBytes(alpha);
+                IndexColorModel colors = new IndexColorModel(bits, entries, red, green, blue, alpha);
+                int type = bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY;
+                BufferedImage im = new BufferedImage(WIDTH, HEIGHT, type, colors);
+                WritableRaster raster = im.getRaster();
+                for (int y = 0; y < HEIGHT; y++) {
+                    for (int x = 0; x < WIDTH; x++) raster.setSample(x, y, 0, random.nextInt(entries));
+                }
+                checkBands(TestImages.write(im, "png"), true);
+            }
+        }
+    }
+
+    public static void testOtherImagesAreRead() throws IOException {
+        BufferedImage grey = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        grey.getGraphics().drawImage(TestImages.noisePixels(WIDTH, HEIGHT, SEED), 0, 0, null);
+        checkBands(TestImages.write(grey, "png"), false);
+        checkBands(TestImages.write(TestImages.noisePixels(WIDTH, HEIGHT, SEED), "jpg"), false);
+    }
+
+    public static void testBandsMustBeReadFromTopToBottom() throws IOException {
+        File file = TestImages.write(TestImages.noisePixels(WIDTH, HEIGHT, SEED), "png");
+        try (ImageBandReader reader = new ImageBandReader(file.getPath())) {
+            reader.readBand(10, 10);
+            try {
+                reader.readBand(15, 10);
+                throw new AssertionError("read a band that starts above the end of the previous band");
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+            reader.readBand(20, HEIGHT - 20);
+        }
+    }
+
+    /**
+     * Reads an image file in bands of varying heights, with gaps between them, and compares every pixel
+     * to the image ImageIO decodes
+     * @param file the image file
+     * @param isStreamed whether the file is expected to be decoded a row at a time
+     */
+    private static void checkBands(File file, boolean isStreamed) throws IOException {
+        try (PngRowReader rows = PngRowReader.open(file)) {
+            assertEquals(isStreamed, rows != null, "whether " + file.getName() + " is streamed");
+        }
+        BufferedImage expected = ImageIO.read(file);
+        try (ImageBandReader reader = new ImageBandReader(file.getPath())) {
+            assertEquals(WIDTH, reader.getWidth(), "width");
+            assertEquals(HEIGHT, reader.getHeight(), "height");
+            //bands of growing heights, with a gap of a row after every other band
+            for (int top = 1, rows = 1; top < HEIGHT; top += rows + rows % 2, rows++) {
+                int bandHeight = Math.min(rows, HEIGHT - top);
+                Image band = reader.readBand(top, bandHeight);
+                for (int y = 0; y < bandHeight; y++) {
+                    for (int x = 0; x < WIDTH; x++) {
+                        assertTrue(expected.getRGB(x, top + y) == band.getRGB(y, x),
+                                "pixel " + x + ", " + (top + y) + " of " + file.getName());
+                    }
+                }
+            }
+        }
+    }
+}
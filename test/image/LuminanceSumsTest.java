@@ -0,0 +1,69 @@
+package image;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static testing.Assert.assertEquals;
+
+/**
+ * Tests that the luminance pyramid, the summed-area table and LuminanceSums, which switches from the
+ * first to the second, all give the sums of the pixels
+ */
+public class LuminanceSumsTest {
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 512;
+    private static final int RANDOM_RECTANGLES = 2000;
+    private static final long SEED = 9;
+
+    public static void testPyramidEqualsSummedAreaTable() {
+        int[] pixels = randomPixels(WIDTH, HEIGHT);
+        //white rows, so the sums of the largest squares need the levels of long sums
+        Arrays.fill(pixels, 0, WIDTH * HEIGHT / 2, 0xFFFFFFFF);
+        LuminancePyramid pyramid = new LuminancePyramid(LuminanceRows.of(pixels, WIDTH), WIDTH, HEIGHT);
+        LuminanceIntegral integral = new LuminanceIntegral(LuminanceRows.of(pixels, WIDTH), WIDTH, HEIGHT);
+        for (int size = 2; size <= HEIGHT; size *= 2) {
+            for (int row = 0; row + size <= HEIGHT; row += size) {
+                for (int col = 0; col + size <= WIDTH; col += size) {
+                    assertEquals(integral.sum(row, col, size, size), pyramid.sum(row, col, size),
+                            "sum of the square of " + size + " at " + row + ", " + col);
+                }
+            }
+        }
+    }
+
+    public static void testSummedAreaTableEqualsPixelSums() {
+        int width = 97, height = 61;
+        int[] pixels = randomPixels(width, height);
+        LuminanceIntegral integral = new LuminanceIntegral(LuminanceRows.of(pixels, width), width, height);
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_RECTANGLES; i++) {
+            int row = random.nextInt(height), col = random.nextInt(width);
+            int rows = 1 + random.nextInt(height - row), cols = 1 + random.nextInt(width - col);
+            long expected = 0;
+            for (int y = row; y < row + rows; y++) {
+                for (int x = col; x < col + cols; x++) expected += Luminance.of(pixels[y * width + x]);
+            }
+            assertEquals(expected, integral.sum(row, col, rows, cols),
+                    "sum of " + rows + "x" + cols + " at " + row + ", " + col);
+        }
+    }
+
+    public static void testSumsDoNotChangeWhenThePyramidIsDropped() {
+        int[] pixels = randomPixels(WIDTH, HEIGHT);
+        LuminanceIntegral integral = new LuminanceIntegral(LuminanceRows.of(pixels, WIDTH), WIDTH, HEIGHT);
+        LuminanceSums sums = new LuminanceSums(() -> LuminanceRows.of(pixels, WIDTH), WIDTH, HEIGHT);
+        //aligned squares, which the pyramid covers, then rectangles it doesn't cover, then squares again
+        int[][] queries = {{0, 0, 16, 16}, {32, 64, 32, 32}, {3, 5, 7, 11}, {0, 0, 16, 16}, {32, 64, 32, 32}};
+        for (int[] query : queries) {
+            assertEquals(integral.sum(query[0], query[1], query[2], query[3]),
+                    sums.sum(query[0], query[1], query[2], query[3]), "sum of " + Arrays.toString(query));
+        }
+    }
+
+    private static int[] randomPixels(int width, int height) {
+        Random random = new Random(SEED);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = random.nextInt() | 0xFF000000;
+        return pixels;
+    }
+}
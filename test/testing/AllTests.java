@@ -0,0 +1,55 @@
+package testing;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs every test: each public static method whose name starts with "test", of each test class.
+ * Prints the failures and exits with a non zero status if there were any.
+ * USAGE: java testing.AllTests
+ */
+public class AllTests {
+    private static final String TEST_PREFIX = "test";
+    private static final String FAILED_MSG = "FAILED %s.%s: %s%n";
+    private static final String SUMMARY_MSG = "%d tests, %d failed%n";
+    private static final List<Class<?>> TEST_CLASSES = List.of(
+            ascii_art.img_to_char.AnimationCharMatcherTest.class,
+            ascii_art.img_to_char.CharPaletteTest.class,
+            ascii_art.img_to_char.ParallelMatchingTest.class,
+            ascii_art.img_to_char.SizedCacheTest.class,
+            ascii_art.img_to_char.StreamingMatchingTest.class,
+            ascii_art.img_to_char.SubImageGridTest.class,
+            ascii_art.RenderCacheTest.class,
+            ascii_output.BinaryAsciiRoundTripTest.class,
+            ascii_output.ColorRunsTest.class,
+            image.ImageBandReaderTest.class,
+            image.LuminanceSumsTest.class
+    );
+
+    public static void main(String[] args) throws Exception {
+        int tests = 0, failed = 0;
+        for (Class<?> testClass : TEST_CLASSES) {
+            Method[] methods = testClass.getMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!method.getName().startsWith(TEST_PREFIX) || !Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                tests++;
+                try {
+                    method.invoke(null);
+                } catch (InvocationTargetException e) {
+                    failed++;
+                    System.out.printf(FAILED_MSG, testClass.getSimpleName(), method.getName(), e.getCause());
+                    e.getCause().printStackTrace(System.out);
+                }
+            }
+        }
+        System.out.printf(SUMMARY_MSG, tests, failed);
+        if (failed > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,48 @@
+package testing;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The checks of the tests. Each throws an AssertionError that describes the failure, so the tests don't
+ * depend on running with assertions enabled.
+ */
+public final class Assert {
+    private Assert() {
+    }
+
+    /**
+     * Checks that a condition holds
+     * @param condition the condition
+     * @param message describes what was expected
+     */
+    public static void assertTrue(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    /**
+     * Checks that two values are equal
+     * @param expected the expected value
+     * @param actual the actual value
+     * @param message describes the value
+     */
+    public static void assertEquals(Object expected, Object actual, String message) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * Checks that two arrays hold equal elements, comparing nested arrays by their elements too
+     * @param expected the expected array
+     * @param actual the actual array
+     * @param message describes the array
+     */
+    public static void assertArrayEquals(Object expected, Object actual, String message) {
+        Object[] expectedWrapper = {expected}, actualWrapper = {actual};
+        if (!Arrays.deepEquals(expectedWrapper, actualWrapper)) {
+            throw new AssertionError(message + ": expected " + Arrays.deepToString(expectedWrapper) +
+                    " but was " + Arrays.deepToString(actualWrapper));
+        }
+    }
+}
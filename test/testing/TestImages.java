@@ -0,0 +1,71 @@
+package testing;
+
+import image.Image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Images for the tests, generated so the tests need no input files
+ */
+public final class TestImages {
+    private TestImages() {
+    }
+
+    /**
+     * Creates an image of a diagonal color gradient with random noise, the same for the same arguments
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param seed the seed of the noise
+     * @return the image, decoded from a PNG as images of files are
+     */
+    public static Image noise(int width, int height, long seed) {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(noisePixels(width, height, seed), "png", png);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Image.fromStream(new ByteArrayInputStream(png.toByteArray()));
+    }
+
+    /**
+     * Creates the pixels of the image noise() creates
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param seed the seed of the noise
+     * @return the pixels
+     */
+    public static BufferedImage noisePixels(int width, int height, long seed) {
+        BufferedImage im = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (x * 255 / width + random.nextInt(64)) % 256;
+                int green = (y * 255 / height + random.nextInt(64)) % 256;
+                im.setRGB(x, y, red << 16 | green << 8 | random.nextInt(256));
+            }
+        }
+        return im;
+    }
+
+    /**
+     * Writes an image to a temporary file, which is deleted when the tests end
+     * @param im the image
+     * @param format the format of the file, such as png or jpg
+     * @return the file
+     * @throws IOException in case writing fails
+     */
+    public static File write(BufferedImage im, String format) throws IOException {
+        File file = File.createTempFile("test_image", "." + format);
+        file.deleteOnExit();
+        if (!ImageIO.write(im, format, file)) throw new IOException("No writer of " + format);
+        return file;
+    }
+}